@@ -54,8 +54,15 @@ public class Common {
     private static final POSIX POSIX = getPOSIX();
     private static final BitsStreamGenerator RND = new MersenneTwister();
     private static final int S_BLKSIZE = 512; // from sys/stat.h
+    private static final int MAX_NAME_LENGTH = 255; // NAME_MAX of most file systems
     private static final File TMP_BENCH;
 
+    /**
+     * Bytes the last trial (or invocation) of this JVM left on disk, measured when its
+     * state was torn down, -1 once {@link SpaceProfiler} has reported it.
+     */
+    static volatile long spaceUsed = -1;
+
     File compact;
 
     CRC32 crc;
@@ -154,15 +161,26 @@ public class Common {
         // we only output for key, as all impls offer it and it should be fixed
         if (tmp.getName().contains(".readKey-")) {
             reportSpaceUsed(tmp, "after-close");
+        } else {
+            spaceUsed = bytesUsed(tmp);
         }
         rmdir(TMP_BENCH);
     }
 
 
     protected void reportSpaceUsed(final File dir, final String desc) {
+        final long bytes = bytesUsed(dir);
+        if (bytes < 0) {
+            return;
+        }
+        spaceUsed = bytes;
+        out.println("\nBytes\t" + desc + "\t" + bytes + "\t" + dir.getName());
+    }
+
+    private long bytesUsed(final File dir) {
         final File[] files = dir.listFiles();
         if (files == null) {
-            return;
+            return -1;
         }
         long bytes = 0;
         for (final File f : files) {
@@ -172,7 +190,7 @@ public class Common {
             final FileStat stat = POSIX.stat(f.getAbsolutePath());
             bytes += stat.blocks() * S_BLKSIZE;
         }
-        out.println("\nBytes\t" + desc + "\t" + bytes + "\t" + dir.getName());
+        return bytes;
     }
 
     final String padKey(final int key) {
@@ -180,8 +198,16 @@ public class Common {
         return "0000000000000000".substring(0, 16 - skey.length()) + skey;
     }
 
+    /**
+     * Creates the directory of a benchmark, named after its id, or after its name and
+     * the hash of its id when the parameters make the id too long for a file name.
+     */
     private File create(final BenchmarkParams b, final String suffix) {
-        final File f = new File(TMP_BENCH, b.id() + suffix);
+        String name = b.id();
+        if (name.length() + suffix.length() > MAX_NAME_LENGTH) {
+            name = b.getBenchmark() + "-" + Integer.toHexString(name.hashCode());
+        }
+        final File f = new File(TMP_BENCH, name + suffix);
         if (!f.mkdirs()) {
             throw new IllegalStateException("Cannot mkdir " + f);
         }
@@ -0,0 +1,102 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * YCSB request distributions: which of the {@code items} existing items an operation
+ * reads, updates or starts a scan at.
+ */
+enum KeyDistribution {
+
+    /**
+     * Every item equally likely.
+     */
+    UNIFORM {
+        @Override
+        long next(final SplittableRandom random, final ZipfianGenerator zipfian,
+                  final long items) {
+            return random.nextLong(items);
+        }
+    },
+
+    /**
+     * Zipfian popularity, the popular items scattered over the key space by hashing
+     * (YCSB's {@code ScrambledZipfianGenerator}) so they do not all sit in a few blocks.
+     * Items inserted after the load are never popular.
+     */
+    ZIPFIAN {
+        @Override
+        long next(final SplittableRandom random, final ZipfianGenerator zipfian,
+                  final long items) {
+            return Long.remainderUnsigned(fnv64(zipfian.next(random)), items);
+        }
+    },
+
+    /**
+     * Zipfian popularity by recency: the most recently inserted item is the most popular
+     * (YCSB's {@code SkewedLatestGenerator}).
+     */
+    LATEST {
+        @Override
+        long next(final SplittableRandom random, final ZipfianGenerator zipfian,
+                  final long items) {
+            return Math.max(0, items - 1 - zipfian.next(random));
+        }
+    },
+
+    /**
+     * {@link #HOT_OPERATIONS} of the operations go to the first {@link #HOT_SET} of the
+     * items, the others to the rest (YCSB's {@code HotspotIntegerGenerator}).
+     */
+    HOTSPOT {
+        @Override
+        long next(final SplittableRandom random, final ZipfianGenerator zipfian,
+                  final long items) {
+            final long hot = Math.max(1, (long) (items * HOT_SET));
+            if (hot == items || random.nextDouble() < HOT_OPERATIONS) {
+                return random.nextLong(hot);
+            }
+            return hot + random.nextLong(items - hot);
+        }
+    };
+
+    static final double HOT_SET = 0.2;
+
+    static final double HOT_OPERATIONS = 0.8;
+
+    /**
+     * @param zipfian zipfian generator over the items loaded before the run
+     * @param items   number of items that exist now, inserts included
+     */
+    abstract long next(SplittableRandom random, ZipfianGenerator zipfian, long items);
+
+    private static long fnv64(final long value) {
+        long hash = 0xCBF29CE484222325L;
+        long v = value;
+        for (int i = 0; i < 8; i++) {
+            hash ^= v & 0xFF;
+            hash *= 0x100000001B3L;
+            v >>>= 8;
+        }
+        return hash;
+    }
+}
@@ -26,21 +26,42 @@ import static org.openjdk.jmh.annotations.Level.Invocation;
 import static org.openjdk.jmh.annotations.Level.Trial;
 import static org.openjdk.jmh.annotations.Mode.SampleTime;
 import static org.openjdk.jmh.annotations.Scope.Benchmark;
-import static org.rocksdb.CompressionType.NO_COMPRESSION;
 import static org.rocksdb.RocksDB.loadLibrary;
 import static org.rocksdb.RocksDB.open;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.agrona.MutableDirectBuffer;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.infra.BenchmarkParams;
 import org.openjdk.jmh.infra.Blackhole;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.CompressionOptions;
+import org.rocksdb.CompressionType;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.Filter;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.LRUCache;
 import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.SstFileWriter;
 import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 
@@ -64,6 +85,27 @@ public class RocksDb {
         bh.consume(r.crc.getValue());
     }
 
+    /**
+     * {@link #readCrc} reading each key and value into a direct buffer, which RocksDB
+     * copies into without a Java array per entry.
+     */
+    @Benchmark
+    public void readCrcDirect(final Reader r, final Blackhole bh) {
+        r.crc.reset();
+        final RocksIterator iterator = r.db.newIterator();
+        iterator.seekToFirst();
+        while (iterator.isValid()) {
+            r.dk.clear();
+            iterator.key(r.dk);
+            r.crc.update(r.dk);
+            r.dv.clear();
+            iterator.value(r.dv);
+            r.crc.update(r.dv);
+            iterator.next();
+        }
+        bh.consume(r.crc.getValue());
+    }
+
     @Benchmark
     public void readKey(final Reader r, final Blackhole bh) throws
             RocksDBException {
@@ -77,6 +119,24 @@ public class RocksDb {
         }
     }
 
+    /**
+     * {@link #readKey} with the key and value in direct buffers.
+     */
+    @Benchmark
+    public void readKeyDirect(final Reader r, final Blackhole bh) throws
+            RocksDBException {
+        for (final int key : r.keys) {
+            if (r.intKey) {
+                r.dkb.putInt(0, key);
+            } else {
+                r.dkb.putStringWithoutLengthUtf8(0, r.padKey(key));
+            }
+            r.dk.clear();
+            r.dv.clear();
+            bh.consume(r.db.get(r.readOptions, r.dk, r.dv));
+        }
+    }
+
     @Benchmark
     public void readRev(final Reader r, final Blackhole bh) {
         final RocksIterator iterator = r.db.newIterator();
@@ -97,6 +157,20 @@ public class RocksDb {
         }
     }
 
+    /**
+     * {@link #readSeq} reading each value into a direct buffer.
+     */
+    @Benchmark
+    public void readSeqDirect(final Reader r, final Blackhole bh) {
+        final RocksIterator iterator = r.db.newIterator();
+        iterator.seekToFirst();
+        while (iterator.isValid()) {
+            r.dv.clear();
+            bh.consume(iterator.value(r.dv));
+            iterator.next();
+        }
+    }
+
     @Benchmark
     public void readXxh64(final Reader r, final Blackhole bh) {
         long result = 0;
@@ -115,11 +189,67 @@ public class RocksDb {
         w.write(w.batchSize);
     }
 
+    /**
+     * Loads the records one {@code put} at a time from direct buffers, to compare with
+     * {@link #write} at {@code -p batchSize=1}.
+     */
+    @Benchmark
+    public void writeDirect(final Writer w, final Blackhole bh) throws IOException {
+        w.writeDirect();
+    }
+
+    @Benchmark
+    public void ingest(final Ingester i, final Blackhole bh) throws IOException {
+        i.ingest();
+    }
+
     @State(value = Benchmark)
     public static class CommonRocksDb extends Common {
 
+        /**
+         * Compression of the SST files, a {@link CompressionType} name without its
+         * {@code _COMPRESSION} suffix (e.g. {@code LZ4}), or one per level separated by
+         * {@code :} (e.g. {@code NO:NO:LZ4:ZSTD}), the last one applying to the levels
+         * below it.
+         */
+        @Param("NO")
+        String compression;
+
+        /**
+         * Maximum size of the dictionary compressors that support one (ZSTD, LZ4) are
+         * primed with, 0 for none.
+         */
+        @Param("0")
+        int compressionDictBytes;
+
+        /**
+         * Uncompressed size of the SST data blocks.
+         */
+        @Param("4096")
+        long blockSize;
+
+        /**
+         * Bloom filter bits per key, 0 for no filter.
+         */
+        @Param("0")
+        int bloomBits;
+
+        /**
+         * Size of the LRU cache of uncompressed blocks.
+         */
+        @Param("8388608")
+        long blockCacheSize;
+
         RocksDB db;
 
+        Options options;
+
+        Cache blockCache;
+
+        Filter filter;
+
+        CompressionOptions compressionOptions;
+
         /**
          * Writable key buffer. Backed by a plain byte[] for RocksDB API ease.
          */
@@ -130,15 +260,64 @@ public class RocksDb {
          */
         MutableDirectBuffer wvb;
 
+        /**
+         * Direct key buffer, for the {@code ByteBuffer} methods of RocksDB. Their
+         * position and limit are the key or value, so they are cleared before each use.
+         */
+        ByteBuffer dk;
+
+        /**
+         * Direct value buffer, {@code valSize} bytes.
+         */
+        ByteBuffer dv;
+
+        /**
+         * Writable view of {@link #dk}.
+         */
+        MutableDirectBuffer dkb;
+
+        /**
+         * Writable view of {@link #dv}.
+         */
+        MutableDirectBuffer dvb;
+
+        ReadOptions readOptions;
+
         @Override
         public void setup(final BenchmarkParams b) throws IOException {
             super.setup(b);
             wkb = new UnsafeBuffer(new byte[keySize]);
             wvb = new UnsafeBuffer(new byte[valSize]);
+            dk = ByteBuffer.allocateDirect(keySize);
+            dv = ByteBuffer.allocateDirect(valSize);
+            dkb = new UnsafeBuffer(dk);
+            dvb = new UnsafeBuffer(dv);
             loadLibrary();
-            final Options options = new Options();
+            readOptions = new ReadOptions();
+            options = new Options();
             options.setCreateIfMissing(true);
-            options.setCompressionType(NO_COMPRESSION);
+            final String[] levels = compression.split(":");
+            if (levels.length == 1) {
+                options.setCompressionType(compressionType(levels[0]));
+            } else {
+                final List<CompressionType> perLevel = new ArrayList<>();
+                for (final String level : levels) {
+                    perLevel.add(compressionType(level));
+                }
+                options.setCompressionPerLevel(perLevel);
+            }
+            compressionOptions = new CompressionOptions();
+            compressionOptions.setMaxDictBytes(compressionDictBytes);
+            options.setCompressionOptions(compressionOptions);
+            blockCache = new LRUCache(blockCacheSize);
+            final BlockBasedTableConfig table = new BlockBasedTableConfig();
+            table.setBlockSize(blockSize);
+            table.setBlockCache(blockCache);
+            if (bloomBits > 0) {
+                filter = new BloomFilter(bloomBits, false);
+                table.setFilterPolicy(filter);
+            }
+            options.setTableFormatConfig(table);
             try {
                 db = open(options, tmp.getAbsolutePath());
             } catch (final RocksDBException ex) {
@@ -152,6 +331,17 @@ public class RocksDb {
             if (db != null) {
                 db.close();
             }
+            if (readOptions != null) {
+                readOptions.close();
+            }
+            if (options != null) {
+                options.close();
+                compressionOptions.close();
+                blockCache.close();
+            }
+            if (filter != null) {
+                filter.close();
+            }
             super.teardown();
         }
 
@@ -198,6 +388,172 @@ public class RocksDb {
             }
             batch.clear();
         }
+
+        /**
+         * Flushes the memtable and waits for the compactions that follow, so that reads
+         * go through SST files, with their compression, blocks, filters and block cache.
+         */
+        void settle() throws IOException {
+            try (FlushOptions flush = new FlushOptions()) {
+                flush.setWaitForFlush(true);
+                db.flush(flush);
+                while (db.getLongProperty("rocksdb.compaction-pending") > 0
+                        || db.getLongProperty("rocksdb.num-running-compactions") > 0) {
+                    Thread.sleep(100);
+                }
+            } catch (final RocksDBException ex) {
+                throw new IOException(ex);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+        }
+
+        private static CompressionType compressionType(final String name) {
+            return CompressionType.valueOf(name.toUpperCase(Locale.ROOT) + "_COMPRESSION");
+        }
+
+        void writeDirect() throws IOException {
+            final int rndByteMax = RND_MB.length - valSize;
+            int rndByteOffset = 0;
+
+            try (WriteOptions opt = new WriteOptions()) {
+                for (final int key : keys) {
+                    if (intKey) {
+                        dkb.putInt(0, key, LITTLE_ENDIAN);
+                    } else {
+                        dkb.putStringWithoutLengthUtf8(0, padKey(key));
+                    }
+                    if (valRandom) {
+                        dvb.putBytes(0, RND_MB, rndByteOffset, valSize);
+                        rndByteOffset += valSize;
+                        if (rndByteOffset >= rndByteMax) {
+                            rndByteOffset = 0;
+                        }
+                    } else {
+                        dvb.putInt(0, key);
+                    }
+                    dk.clear();
+                    dv.clear();
+                    db.put(opt, dk, dv);
+                }
+            } catch (final RocksDBException ex) {
+                throw new IOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Loads the same records as {@link Writer}, but as SST files ingested into the
+     * database: the keys are sorted, split into {@link #ingestThreads} key ranges, and each
+     * range is written to its own file by its own thread with an {@link SstFileWriter}. The
+     * files do not overlap, so one ingestion puts them all in the bottommost level, without
+     * WAL, memtable or compaction. Sorting is part of the measured time.
+     */
+    @State(Benchmark)
+    public static class Ingester extends CommonRocksDb {
+
+        @Param("4")
+        int ingestThreads;
+
+        File sst;
+
+        ExecutorService executor;
+
+        @Setup(Invocation)
+        @Override
+        public void setup(final BenchmarkParams b) throws IOException {
+            super.setup(b);
+            sst = new File(tmp.getParentFile(), tmp.getName() + "-sst");
+            if (!sst.mkdirs()) {
+                throw new IllegalStateException("Cannot mkdir " + sst);
+            }
+            executor = Executors.newFixedThreadPool(ingestThreads);
+        }
+
+        @TearDown(Invocation)
+        @Override
+        public void teardown() throws IOException {
+            executor.shutdown();
+            super.teardown();
+        }
+
+        void ingest() throws IOException {
+            final int[] sorted = sortedKeys();
+            final List<Future<String>> files = new ArrayList<>();
+            final int rangeSize = (sorted.length + ingestThreads - 1) / ingestThreads;
+            for (int from = 0; from < sorted.length; from += rangeSize) {
+                final int start = from;
+                final int end = Math.min(sorted.length, from + rangeSize);
+                files.add(executor.submit(() -> writeSst(sorted, start, end)));
+            }
+
+            final List<String> paths = new ArrayList<>();
+            try (IngestExternalFileOptions opt = new IngestExternalFileOptions()) {
+                opt.setMoveFiles(true);
+                for (final Future<String> file : files) {
+                    paths.add(file.get());
+                }
+                db.ingestExternalFile(paths, opt);
+            } catch (final RocksDBException | ExecutionException ex) {
+                throw new IOException(ex);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            }
+        }
+
+        /**
+         * The keys in the byte order RocksDB keeps them in. Little endian integer keys sort
+         * like their byte-reversed value compared unsigned (hence the sign bit flip), the
+         * zero-padded string keys like their numeric value.
+         */
+        private int[] sortedKeys() {
+            final int[] sorted = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                sorted[i] = intKey ? Integer.reverseBytes(keys[i]) ^ Integer.MIN_VALUE : keys[i];
+            }
+            Arrays.sort(sorted);
+            if (intKey) {
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = Integer.reverseBytes(sorted[i] ^ Integer.MIN_VALUE);
+                }
+            }
+            return sorted;
+        }
+
+        private String writeSst(final int[] sorted, final int from, final int to) throws RocksDBException {
+            final MutableDirectBuffer kb = new UnsafeBuffer(new byte[keySize]);
+            final MutableDirectBuffer vb = new UnsafeBuffer(new byte[valSize]);
+            final int rndByteMax = RND_MB.length - valSize;
+            int rndByteOffset = (int) ((long) from * valSize % rndByteMax);
+
+            final String path = new File(sst, from + ".sst").getAbsolutePath();
+            try (EnvOptions env = new EnvOptions();
+                 SstFileWriter writer = new SstFileWriter(env, options)) {
+                writer.open(path);
+                for (int i = from; i < to; i++) {
+                    final int key = sorted[i];
+                    if (intKey) {
+                        kb.putInt(0, key, LITTLE_ENDIAN);
+                    } else {
+                        kb.putStringWithoutLengthUtf8(0, padKey(key));
+                    }
+                    if (valRandom) {
+                        vb.putBytes(0, RND_MB, rndByteOffset, valSize);
+                        rndByteOffset += valSize;
+                        if (rndByteOffset >= rndByteMax) {
+                            rndByteOffset = 0;
+                        }
+                    } else {
+                        vb.putInt(0, key);
+                    }
+                    writer.put(kb.byteArray(), vb.byteArray());
+                }
+                writer.finish();
+            }
+            return path;
+        }
     }
 
     @State(Benchmark)
@@ -208,6 +564,7 @@ public class RocksDb {
         public void setup(final BenchmarkParams b) throws IOException {
             super.setup(b);
             super.write(num);
+            settle();
         }
 
         @TearDown(Trial)
@@ -0,0 +1,223 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import static java.lang.System.nanoTime;
+import static java.lang.System.out;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.concurrent.locks.LockSupport.parkNanos;
+import static org.openjdk.jmh.annotations.Level.Iteration;
+import static org.openjdk.jmh.annotations.Level.Trial;
+import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+
+import org.HdrHistogram.Histogram;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteOptions;
+
+/**
+ * Open-loop latencies of random gets and puts on the database of {@link RocksDb}.
+ *
+ * <p>
+ * The {@code SampleTime} benchmarks of {@link RocksDb} are closed-loop: the next operation
+ * only starts when the previous one is done, so a put stalled for a second by a flush or
+ * compaction is one slow sample, while the thousands of operations that would have been
+ * issued during that second are never measured. Here operations are due at a fixed
+ * {@link Driver#rate}, whatever the database is doing. Each operation's latency is taken
+ * from when it was due rather than from when it could start, so the operations queued
+ * behind a stall are charged the time they waited, as the clients of a service would be.
+ *
+ * <p>
+ * One benchmark invocation runs the schedule for {@link Driver#seconds} on one thread,
+ * against a database preloaded with all {@link Common#keys}. Every
+ * {@link Driver#reportSeconds} it prints an
+ * {@code "Interval" \t elapsed seconds \t count \t p50 \t p90 \t p99 \t p99.9 \t p99.99 \t max \t running flushes \t running compactions}
+ * line, latencies in microseconds, so stalls can be lined up with RocksDB's background
+ * work. At the end, two {@code "Total"} lines give the percentiles of the whole run from
+ * the due times ({@code response}) and from the actual start times ({@code service});
+ * the gap between them is what a closed-loop benchmark omits. A rate above what the
+ * database sustains makes response times grow until the end of the run.
+ */
+@OutputTimeUnit(SECONDS)
+@Fork(1)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@BenchmarkMode(SingleShotTime)
+public class RocksDbOpenLoop {
+
+    @Benchmark
+    public void run(final Driver d) throws IOException {
+        d.run();
+    }
+
+    @State(Benchmark)
+    public static class Driver extends RocksDb.CommonRocksDb {
+
+        /**
+         * Highest latency recorded, 1 hour in nanoseconds.
+         */
+        private static final long HIGHEST = 3_600_000_000_000L;
+
+        /**
+         * Operations issued per second.
+         */
+        @Param("20000")
+        int rate;
+
+        /**
+         * Duration of the schedule.
+         */
+        @Param("60")
+        int seconds;
+
+        /**
+         * Percentage of the operations that are puts, the others are gets.
+         */
+        @Param("50")
+        int writePercent;
+
+        @Param("1")
+        int reportSeconds;
+
+        WriteOptions writeOptions;
+
+        SplittableRandom random;
+
+        byte[] rvb;
+
+        boolean reporting;
+
+        @Setup(Trial)
+        @Override
+        public void setup(final BenchmarkParams b) throws IOException {
+            super.setup(b);
+            super.write(num);
+            writeOptions = new WriteOptions();
+            random = new SplittableRandom(42);
+            rvb = new byte[valSize];
+        }
+
+        @Setup(Iteration)
+        public void iteration(final IterationParams i) {
+            reporting = i.getType() == IterationType.MEASUREMENT;
+        }
+
+        @TearDown(Trial)
+        @Override
+        public void teardown() throws IOException {
+            writeOptions.close();
+            super.teardown();
+        }
+
+        void run() throws IOException {
+            final Histogram interval = new Histogram(HIGHEST, 3);
+            final Histogram response = new Histogram(HIGHEST, 3);
+            final Histogram service = new Histogram(HIGHEST, 3);
+            if (reporting) {
+                out.println("\nInterval\tseconds\tcount\tp50\tp90\tp99\tp99.9\tp99.99\tmax\tflushes\tcompactions");
+            }
+
+            final long start = nanoTime();
+            final long end = start + SECONDS.toNanos(seconds);
+            final long reportNanos = SECONDS.toNanos(reportSeconds);
+            long nextReport = start + reportNanos;
+            for (long i = 0;; i++) {
+                final long due = start + i * 1_000_000_000L / rate;
+                if (due >= end) {
+                    break;
+                }
+                long now;
+                while ((now = nanoTime()) < due) {
+                    if (due - now > 100_000) {
+                        parkNanos(due - now - 50_000);
+                    }
+                }
+                operation();
+                final long done = nanoTime();
+                interval.recordValue(Math.min(done - due, HIGHEST));
+                response.recordValue(Math.min(done - due, HIGHEST));
+                service.recordValue(Math.min(done - now, HIGHEST));
+                if (done >= nextReport) {
+                    report("Interval\t" + (done - start) / 1_000_000 / 1_000.0, interval, true);
+                    interval.reset();
+                    nextReport = done + reportNanos;
+                }
+            }
+            if (interval.getTotalCount() > 0) {
+                report("Interval\t" + (nanoTime() - start) / 1_000_000 / 1_000.0, interval, true);
+            }
+            report("Total\tresponse", response, false);
+            report("Total\tservice", service, false);
+        }
+
+        private void operation() throws IOException {
+            final int key = keys[random.nextInt(keys.length)];
+            if (intKey) {
+                wkb.putInt(0, key, LITTLE_ENDIAN);
+            } else {
+                wkb.putStringWithoutLengthUtf8(0, padKey(key));
+            }
+            try {
+                if (random.nextInt(100) < writePercent) {
+                    if (valRandom) {
+                        wvb.putBytes(0, RND_MB, random.nextInt(RND_MB.length - valSize), valSize);
+                    } else {
+                        wvb.putInt(0, key);
+                    }
+                    db.put(writeOptions, wkb.byteArray(), wvb.byteArray());
+                } else {
+                    db.get(wkb.byteArray(), rvb);
+                }
+            } catch (final RocksDBException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        private void report(final String prefix, final Histogram h,
+                            final boolean background) throws IOException {
+            if (!reporting) {
+                return;
+            }
+            final StringBuilder line = new StringBuilder(prefix)
+                    .append('\t').append(h.getTotalCount());
+            for (final double percentile : new double[]{50, 90, 99, 99.9, 99.99}) {
+                line.append('\t').append(h.getValueAtPercentile(percentile) / 1_000.0);
+            }
+            line.append('\t').append(h.getMaxValue() / 1_000.0);
+            if (background) {
+                try {
+                    line.append('\t').append(db.getLongProperty("rocksdb.num-running-flushes"))
+                            .append('\t').append(db.getLongProperty("rocksdb.num-running-compactions"));
+                } catch (final RocksDBException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            out.println(line);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import static java.lang.System.nanoTime;
+import static java.lang.System.out;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.openjdk.jmh.annotations.Level.Iteration;
+import static org.openjdk.jmh.annotations.Level.Trial;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+import static org.openjdk.jmh.annotations.Scope.Thread;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.HdrHistogram.Histogram;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteOptions;
+
+/**
+ * Multi-threaded variants of {@link RocksDb#readKey}, {@link RocksDb#readSeq} and
+ * {@link RocksDb#write}, plus a mix of reads and writes, against one database shared by
+ * all benchmark threads.
+ *
+ * <p>
+ * Every thread works on its own partition of {@link Common#keys}: a contiguous
+ * {@code num / threads} slice, cycled through one key per operation. An operation is a
+ * single get, a single put, or a seek followed by {@link Scan#scanLength} nexts, so the
+ * score is the aggregate operations per second of all threads. Each thread also records
+ * its own operation latencies during the measurement iterations, printed at the end as
+ * {@code "Latency" \t benchmark \t thread \t count \t p50 \t p99 \t p99.9 \t max} lines
+ * in microseconds, which shows whether some threads fall behind the others.
+ *
+ * <p>
+ * The thread count comes from {@code -t}, all cores by default; run e.g.
+ * {@code for t in 1 2 4 8; do java -jar target/benchmarks.jar RocksDbThreads -t $t; done}
+ * to see how throughput scales up to the core count.
+ */
+@OutputTimeUnit(SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Throughput)
+@Threads(Threads.MAX)
+public class RocksDbThreads {
+
+    @Benchmark
+    public void readKey(final Db db, final Partition p, final Blackhole bh)
+            throws RocksDBException {
+        p.nextKey();
+        final long start = nanoTime();
+        bh.consume(db.db.get(p.kb.byteArray(), p.vb.byteArray()));
+        p.record(start);
+    }
+
+    @Benchmark
+    public void readSeq(final Db db, final Partition p, final Scan s,
+                        final Blackhole bh) {
+        p.nextKey();
+        final long start = nanoTime();
+        try (RocksIterator iterator = db.db.newIterator()) {
+            iterator.seek(p.kb.byteArray());
+            for (int i = 0; i < s.scanLength && iterator.isValid(); i++) {
+                bh.consume(iterator.value());
+                iterator.next();
+            }
+        }
+        p.record(start);
+    }
+
+    @Benchmark
+    public void write(final Db db, final Partition p) throws RocksDBException {
+        p.nextKey();
+        p.nextValue();
+        final long start = nanoTime();
+        db.db.put(db.writeOptions, p.kb.byteArray(), p.vb.byteArray());
+        p.record(start);
+    }
+
+    @Benchmark
+    public void mixed(final Db db, final Partition p, final Mix m,
+                      final Blackhole bh) throws RocksDBException {
+        p.nextKey();
+        final boolean read = p.random.nextInt(100) < m.readPercent;
+        if (!read) {
+            p.nextValue();
+        }
+        final long start = nanoTime();
+        if (read) {
+            bh.consume(db.db.get(p.kb.byteArray(), p.vb.byteArray()));
+        } else {
+            db.db.put(db.writeOptions, p.kb.byteArray(), p.vb.byteArray());
+        }
+        p.record(start);
+    }
+
+    /**
+     * The database, loaded with all {@link Common#keys} before the first iteration.
+     */
+    @State(Benchmark)
+    public static class Db extends RocksDb.CommonRocksDb {
+
+        WriteOptions writeOptions;
+
+        @Setup(Trial)
+        @Override
+        public void setup(final BenchmarkParams b) throws IOException {
+            super.setup(b);
+            super.write(num);
+            writeOptions = new WriteOptions();
+        }
+
+        @TearDown(Trial)
+        @Override
+        public void teardown() throws IOException {
+            writeOptions.close();
+            super.teardown();
+        }
+    }
+
+    /**
+     * One thread's slice of the keys, its own key and value buffers, and its latencies.
+     */
+    @State(Thread)
+    public static class Partition {
+
+        Db db;
+
+        int[] keys;
+
+        int next;
+
+        int rndByteOffset;
+
+        boolean intKey;
+
+        int valSize;
+
+        MutableDirectBuffer kb;
+
+        MutableDirectBuffer vb;
+
+        SplittableRandom random;
+
+        Histogram latencies;
+
+        boolean recording;
+
+        String name;
+
+        int thread;
+
+        @Setup(Trial)
+        public void setup(final Db db, final ThreadParams t, final BenchmarkParams b) {
+            this.db = db;
+            thread = t.getThreadIndex();
+            final int from = (int) ((long) db.num * thread / t.getThreadCount());
+            final int to = (int) ((long) db.num * (thread + 1) / t.getThreadCount());
+            keys = Arrays.copyOfRange(db.keys, from, to);
+            intKey = db.intKey;
+            valSize = db.valSize;
+            kb = new UnsafeBuffer(new byte[db.keySize]);
+            vb = new UnsafeBuffer(new byte[valSize]);
+            random = new SplittableRandom(thread);
+            rndByteOffset = (int) ((long) from * valSize % (Common.RND_MB.length - valSize));
+            // 1 ns to 1 min at 3 significant digits
+            latencies = new Histogram(60_000_000_000L, 3);
+            name = b.getBenchmark().substring(b.getBenchmark().lastIndexOf('.') + 1);
+        }
+
+        @Setup(Iteration)
+        public void iteration(final IterationParams i) {
+            recording = i.getType() == IterationType.MEASUREMENT;
+        }
+
+        @TearDown(Trial)
+        public void report() {
+            out.println("\nLatency\t" + name + "\t" + thread + "\t" + latencies.getTotalCount()
+                    + "\t" + micros(50) + "\t" + micros(99) + "\t" + micros(99.9)
+                    + "\t" + latencies.getMaxValue() / 1_000.0);
+        }
+
+        private double micros(final double percentile) {
+            return latencies.getValueAtPercentile(percentile) / 1_000.0;
+        }
+
+        void nextKey() {
+            final int key = keys[next];
+            next = next + 1 == keys.length ? 0 : next + 1;
+            if (intKey) {
+                kb.putInt(0, key, LITTLE_ENDIAN);
+            } else {
+                kb.putStringWithoutLengthUtf8(0, db.padKey(key));
+            }
+        }
+
+        void nextValue() {
+            vb.putBytes(0, Common.RND_MB, rndByteOffset, valSize);
+            rndByteOffset += valSize;
+            if (rndByteOffset >= Common.RND_MB.length - valSize) {
+                rndByteOffset = 0;
+            }
+        }
+
+        void record(final long start) {
+            if (recording) {
+                latencies.recordValue(Math.min(nanoTime() - start, latencies.getHighestTrackableValue()));
+            }
+        }
+    }
+
+    @State(Benchmark)
+    public static class Scan {
+
+        /**
+         * Number of entries read after each seek.
+         */
+        @Param("100")
+        int scanLength;
+    }
+
+    @State(Benchmark)
+    public static class Mix {
+
+        /**
+         * Percentage of the operations that are reads, the others are writes.
+         */
+        @Param({"50", "90"})
+        int readPercent;
+    }
+}
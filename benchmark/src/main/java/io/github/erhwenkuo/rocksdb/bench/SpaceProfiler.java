@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.openjdk.jmh.results.AggregationPolicy.MAX;
+
+import java.util.Collection;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Reports the disk space a benchmark's database used as a {@code disk.bytes} secondary
+ * result, next to its score in the JMH table and in {@code -rf csv} or {@code json}
+ * files, so that speed and footprint can be compared across parameters in one report.
+ *
+ * <p>
+ * The space is measured by {@link Common#teardown()}, at the end of each trial (or
+ * invocation, for the write benchmarks), after the database was closed. Enable with
+ * {@code -prof io.github.erhwenkuo.rocksdb.bench.SpaceProfiler}.
+ */
+public final class SpaceProfiler implements InternalProfiler {
+
+    @Override
+    public String getDescription() {
+        return "Disk space used by the database of the benchmark";
+    }
+
+    @Override
+    public void beforeIteration(final BenchmarkParams b, final IterationParams i) {
+        // measured by the benchmark state
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(final BenchmarkParams b,
+                                                       final IterationParams i,
+                                                       final IterationResult r) {
+        final long bytes = Common.spaceUsed;
+        if (bytes < 0) {
+            return emptyList();
+        }
+        Common.spaceUsed = -1;
+        return singletonList(new ScalarResult("disk.bytes", bytes, "bytes", MAX));
+    }
+}
@@ -0,0 +1,66 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * Sizes of the values written, up to a maximum (YCSB's {@code fieldlengthdistribution}).
+ */
+enum ValueSizes {
+
+    /**
+     * Always the maximum.
+     */
+    CONSTANT {
+        @Override
+        int next(final SplittableRandom random, final ZipfianGenerator zipfian,
+                 final int max) {
+            return max;
+        }
+    },
+
+    /**
+     * Uniform between 1 and the maximum.
+     */
+    UNIFORM {
+        @Override
+        int next(final SplittableRandom random, final ZipfianGenerator zipfian,
+                 final int max) {
+            return 1 + random.nextInt(max);
+        }
+    },
+
+    /**
+     * Zipfian between 1 and the maximum: mostly small values, a long tail of large ones.
+     */
+    ZIPFIAN {
+        @Override
+        int next(final SplittableRandom random, final ZipfianGenerator zipfian,
+                 final int max) {
+            return 1 + (int) zipfian.next(random);
+        }
+    };
+
+    /**
+     * @param zipfian zipfian generator over {@code max} items
+     */
+    abstract int next(SplittableRandom random, ZipfianGenerator zipfian, int max);
+}
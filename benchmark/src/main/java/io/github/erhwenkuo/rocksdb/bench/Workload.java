@@ -0,0 +1,101 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import java.util.SplittableRandom;
+
+/**
+ * YCSB core workloads: the mix of operations, and the request distribution each uses
+ * unless the benchmark overrides it. Each is given as the fractions of reads, updates,
+ * inserts and scans; the rest of the operations are read-modify-writes.
+ */
+enum Workload {
+
+    /**
+     * Update heavy: 50% reads, 50% updates (session store).
+     */
+    A(0.5, 0.5, 0, 0, KeyDistribution.ZIPFIAN),
+
+    /**
+     * Read mostly: 95% reads, 5% updates (photo tagging).
+     */
+    B(0.95, 0.05, 0, 0, KeyDistribution.ZIPFIAN),
+
+    /**
+     * Read only (user profile cache).
+     */
+    C(1, 0, 0, 0, KeyDistribution.ZIPFIAN),
+
+    /**
+     * Read latest: 95% reads, 5% inserts, reads favour recent inserts (status updates).
+     */
+    D(0.95, 0, 0.05, 0, KeyDistribution.LATEST),
+
+    /**
+     * Short ranges: 95% scans, 5% inserts (threaded conversations).
+     */
+    E(0, 0, 0.05, 0.95, KeyDistribution.ZIPFIAN),
+
+    /**
+     * Read-modify-write: 50% reads, 50% reads followed by a write of the same key
+     * (user database).
+     */
+    F(0.5, 0, 0, 0, KeyDistribution.ZIPFIAN);
+
+    enum Operation {
+        READ, UPDATE, INSERT, SCAN, READ_MODIFY_WRITE
+    }
+
+    private final double read;
+    private final double update;
+    private final double insert;
+    private final double scan;
+    private final KeyDistribution distribution;
+
+    Workload(final double read, final double update, final double insert,
+             final double scan, final KeyDistribution distribution) {
+        this.read = read;
+        this.update = update;
+        this.insert = insert;
+        this.scan = scan;
+        this.distribution = distribution;
+    }
+
+    KeyDistribution distribution() {
+        return distribution;
+    }
+
+    Operation next(final SplittableRandom random) {
+        double u = random.nextDouble();
+        if ((u -= read) < 0) {
+            return Operation.READ;
+        }
+        if ((u -= update) < 0) {
+            return Operation.UPDATE;
+        }
+        if ((u -= insert) < 0) {
+            return Operation.INSERT;
+        }
+        if (u - scan < 0) {
+            return Operation.SCAN;
+        }
+        return Operation.READ_MODIFY_WRITE;
+    }
+}
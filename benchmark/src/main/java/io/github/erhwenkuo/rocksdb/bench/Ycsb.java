@@ -0,0 +1,312 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import static java.nio.ByteOrder.BIG_ENDIAN;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mapdb.DBMaker.fileDB;
+import static org.mapdb.Serializer.BYTE_ARRAY;
+import static org.openjdk.jmh.annotations.Level.Trial;
+import static org.openjdk.jmh.annotations.Mode.Throughput;
+import static org.openjdk.jmh.annotations.Scope.Benchmark;
+import static org.rocksdb.CompressionType.NO_COMPRESSION;
+import static org.rocksdb.RocksDB.loadLibrary;
+import static org.rocksdb.RocksDB.open;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map.Entry;
+import java.util.SplittableRandom;
+
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.Blackhole;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+
+/**
+ * YCSB core workloads A to F against RocksDB and MapDB, opened as in {@link RocksDb}
+ * and {@link MapDb}.
+ *
+ * <p>
+ * Each trial loads {@code num} items, item {@code i} under a key that sorts in item order
+ * (a big endian integer, or {@code i} zero-padded to 16 characters), with values sized by
+ * {@link #valueSizes} up to {@code valSize} random bytes. One benchmark operation is then
+ * one YCSB operation drawn from the {@link Workload} mix: a read, an update, an insert of
+ * the next item, a scan of 1 to {@link #maxScanLength} items, or a read-modify-write. The
+ * items operated on follow the workload's request distribution, or
+ * {@link #requestDistribution} when set. The score is operations per second; use
+ * {@code -bm sample} for latency percentiles instead.
+ *
+ * <p>
+ * The {@code sequential} and {@code valRandom} parameters of {@link Common} do not apply:
+ * items are loaded in order and values are always random. Run single-threaded, MapDB is
+ * opened without concurrency support. The disk space of each store after the run is
+ * printed as a {@code "Bytes"} line.
+ */
+@OutputTimeUnit(SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 3)
+@BenchmarkMode(Throughput)
+public class Ycsb {
+
+    @Benchmark
+    public void rocksDb(final RocksDbStore s, final Blackhole bh) throws IOException {
+        s.operation(bh);
+    }
+
+    @Benchmark
+    public void mapDb(final MapDbStore s, final Blackhole bh) throws IOException {
+        s.operation(bh);
+    }
+
+    @State(Benchmark)
+    public abstract static class Store extends Common {
+
+        @Param({"A", "B", "C", "D", "E", "F"})
+        String workload;
+
+        /**
+         * Request distribution, one of {@link KeyDistribution} or "default" for the
+         * workload's own.
+         */
+        @Param("default")
+        String requestDistribution;
+
+        /**
+         * Value size distribution, one of {@link ValueSizes}.
+         */
+        @Param("constant")
+        String valueSizes;
+
+        @Param("100")
+        int maxScanLength;
+
+        Workload mix;
+
+        KeyDistribution distribution;
+
+        ValueSizes sizes;
+
+        ZipfianGenerator itemZipfian;
+
+        ZipfianGenerator sizeZipfian;
+
+        SplittableRandom random;
+
+        /**
+         * Number of items, the loaded ones plus those inserted since.
+         */
+        int items;
+
+        MutableDirectBuffer kb;
+
+        abstract void open() throws IOException;
+
+        abstract void close() throws IOException;
+
+        abstract byte[] read(byte[] key) throws IOException;
+
+        abstract void write(byte[] key, byte[] value) throws IOException;
+
+        abstract void scan(byte[] key, int length, Blackhole bh);
+
+        @Setup(Trial)
+        @Override
+        public void setup(final BenchmarkParams b) throws IOException {
+            super.setup(b);
+            mix = Workload.valueOf(workload.toUpperCase(Locale.ROOT));
+            distribution = "default".equals(requestDistribution)
+                    ? mix.distribution()
+                    : KeyDistribution.valueOf(requestDistribution.toUpperCase(Locale.ROOT));
+            sizes = ValueSizes.valueOf(valueSizes.toUpperCase(Locale.ROOT));
+            itemZipfian = new ZipfianGenerator(num);
+            sizeZipfian = new ZipfianGenerator(valSize);
+            random = new SplittableRandom(42);
+            kb = new UnsafeBuffer(new byte[keySize]);
+            open();
+            for (items = 0; items < num; items++) {
+                write(key(items), value());
+            }
+        }
+
+        @TearDown(Trial)
+        @Override
+        public void teardown() throws IOException {
+            close();
+            reportSpaceUsed(tmp, "ycsb-" + workload);
+            super.teardown();
+        }
+
+        void operation(final Blackhole bh) throws IOException {
+            switch (mix.next(random)) {
+                case READ:
+                    bh.consume(read(key(choose())));
+                    break;
+                case UPDATE:
+                    write(key(choose()), value());
+                    break;
+                case INSERT:
+                    write(key(items++), value());
+                    break;
+                case SCAN:
+                    scan(key(choose()), 1 + random.nextInt(maxScanLength), bh);
+                    break;
+                case READ_MODIFY_WRITE:
+                    final byte[] key = key(choose());
+                    bh.consume(read(key));
+                    write(key, value());
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        private int choose() {
+            return (int) distribution.next(random, itemZipfian, items);
+        }
+
+        private byte[] key(final int item) {
+            if (intKey) {
+                kb.putInt(0, item, BIG_ENDIAN);
+            } else {
+                kb.putStringWithoutLengthUtf8(0, padKey(item));
+            }
+            return kb.byteArray();
+        }
+
+        private byte[] value() {
+            final int size = sizes.next(random, sizeZipfian, valSize);
+            final int offset = random.nextInt(RND_MB.length - size);
+            return Arrays.copyOfRange(RND_MB, offset, offset + size);
+        }
+    }
+
+    @State(Benchmark)
+    public static class RocksDbStore extends Store {
+
+        RocksDB db;
+
+        Options options;
+
+        @Override
+        void open() throws IOException {
+            loadLibrary();
+            options = new Options();
+            options.setCreateIfMissing(true);
+            options.setCompressionType(NO_COMPRESSION);
+            try {
+                db = RocksDB.open(options, tmp.getAbsolutePath());
+            } catch (final RocksDBException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        @Override
+        void close() {
+            db.close();
+            options.close();
+        }
+
+        @Override
+        byte[] read(final byte[] key) throws IOException {
+            try {
+                return db.get(key);
+            } catch (final RocksDBException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        @Override
+        void write(final byte[] key, final byte[] value) throws IOException {
+            try {
+                db.put(key, value);
+            } catch (final RocksDBException ex) {
+                throw new IOException(ex);
+            }
+        }
+
+        @Override
+        void scan(final byte[] key, final int length, final Blackhole bh) {
+            try (RocksIterator iterator = db.newIterator()) {
+                iterator.seek(key);
+                for (int i = 0; i < length && iterator.isValid(); i++) {
+                    bh.consume(iterator.value());
+                    iterator.next();
+                }
+            }
+        }
+    }
+
+    @State(Benchmark)
+    public static class MapDbStore extends Store {
+
+        DB db;
+
+        BTreeMap<byte[], byte[]> map;
+
+        @Override
+        void open() {
+            db = fileDB(new File(tmp, "map.db"))
+                    .fileMmapEnable()
+                    .concurrencyDisable()
+                    .allocateStartSize((long) num * valSize)
+                    .make();
+            map = db.treeMap("ba2ba")
+                    .keySerializer(BYTE_ARRAY)
+                    .valueSerializer(BYTE_ARRAY)
+                    .createOrOpen();
+        }
+
+        @Override
+        void close() {
+            db.close();
+        }
+
+        @Override
+        byte[] read(final byte[] key) {
+            return map.get(key);
+        }
+
+        @Override
+        void write(final byte[] key, final byte[] value) {
+            map.put(key, value);
+        }
+
+        @Override
+        void scan(final byte[] key, final int length, final Blackhole bh) {
+            final Iterator<Entry<byte[], byte[]>> iterator =
+                    map.tailMap(key, true).entrySet().iterator();
+            for (int i = 0; i < length && iterator.hasNext(); i++) {
+                bh.consume(iterator.next().getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*-
+ * #%L
+ * LmdbJava Benchmarks
+ * %%
+ * Copyright (C) 2016 - 2020 The LmdbJava Open Source Project
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package io.github.erhwenkuo.rocksdb.bench;
+
+import static java.lang.Math.pow;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipfian distributed item numbers in {@code [0, items)}, item 0 the most popular,
+ * after YCSB's {@code ZipfianGenerator} (Gray et al., "Quickly Generating
+ * Billion-Record Synthetic Databases", SIGMOD 1994).
+ *
+ * <p>
+ * The zeta constant is computed once, in O(items), when the generator is created.
+ */
+final class ZipfianGenerator {
+
+    /**
+     * YCSB's default skew: about 80% of the requests go to 20% of the items.
+     */
+    static final double ZIPFIAN_CONSTANT = 0.99;
+
+    private final long items;
+    private final double theta;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+
+    ZipfianGenerator(final long items) {
+        this(items, ZIPFIAN_CONSTANT);
+    }
+
+    ZipfianGenerator(final long items, final double theta) {
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+    }
+
+    long next(final SplittableRandom random) {
+        final double u = random.nextDouble();
+        final double uz = u * zetaN;
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + pow(0.5, theta)) {
+            return 1;
+        }
+        return Math.min(items - 1, (long) (items * pow(eta * u - eta + 1, alpha)));
+    }
+
+    private static double zeta(final long n, final double theta) {
+        double sum = 0;
+        for (long i = 0; i < n; i++) {
+            sum += 1 / pow(i + 1, theta);
+        }
+        return sum;
+    }
+}
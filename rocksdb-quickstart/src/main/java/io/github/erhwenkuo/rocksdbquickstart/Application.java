@@ -1,9 +1,12 @@
 package io.github.erhwenkuo.rocksdbquickstart;
 
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
+@EnableConfigurationProperties(RocksDBProperties.class)
 public class Application {
 
 	public static void main(String[] args) {
@@ -0,0 +1,32 @@
+package io.github.erhwenkuo.rocksdbquickstart.config;
+
+/**
+ * Built-in RocksDB merge operators a column family can be opened with. Merges are blind
+ * writes: the operand is stored as is and folded into the value when the key is read or
+ * compacted, so an update does not have to read the key first.
+ */
+public enum MergeOperator {
+    /**
+     * Values are 64-bit integers (8 bytes, little endian) and operands are added to them,
+     * wrapping around like {@code long} arithmetic.
+     */
+    UINT64_ADD("uint64add"),
+
+    /**
+     * Operands are appended to the value, separated by a comma.
+     */
+    STRING_APPEND("stringappend");
+
+    private final String rocksDBName;
+
+    MergeOperator(String rocksDBName) {
+        this.rocksDBName = rocksDBName;
+    }
+
+    /**
+     * @return the name RocksDB knows the operator by, for {@code setMergeOperatorName}
+     */
+    public String getRocksDBName() {
+        return rocksDBName;
+    }
+}
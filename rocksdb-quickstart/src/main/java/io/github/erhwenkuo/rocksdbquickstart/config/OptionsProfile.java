@@ -0,0 +1,77 @@
+package io.github.erhwenkuo.rocksdbquickstart.config;
+
+import org.springframework.util.unit.DataSize;
+
+import java.util.Arrays;
+
+import static org.rocksdb.CompressionType.LZ4_COMPRESSION;
+import static org.rocksdb.CompressionType.NO_COMPRESSION;
+import static org.rocksdb.CompressionType.ZSTD_COMPRESSION;
+
+/**
+ * Named starting points for the {@code rocksdb.options.*} settings. A profile only fills in
+ * the settings that are not configured explicitly.
+ */
+public enum OptionsProfile {
+    /**
+     * RocksDB's own defaults.
+     */
+    DEFAULT {
+        @Override
+        RocksDBProperties.Tuning defaults() {
+            return new RocksDBProperties.Tuning();
+        }
+    },
+
+    /**
+     * Random single key reads: hash index and bloom filters via
+     * {@code optimizeForPointLookup}, no range scans expected.
+     */
+    POINT_LOOKUP {
+        @Override
+        RocksDBProperties.Tuning defaults() {
+            RocksDBProperties.Tuning tuning = new RocksDBProperties.Tuning();
+            tuning.setOptimizeForPointLookup(DataSize.ofMegabytes(256));
+            tuning.setMaxBackgroundJobs(4);
+            return tuning;
+        }
+    },
+
+    /**
+     * Ingest heavy workloads: large memtables, more background flush/compaction threads
+     * and no compression on the hot upper levels.
+     */
+    WRITE_HEAVY {
+        @Override
+        RocksDBProperties.Tuning defaults() {
+            RocksDBProperties.Tuning tuning = new RocksDBProperties.Tuning();
+            tuning.setWriteBufferSize(DataSize.ofMegabytes(128));
+            tuning.setMaxBackgroundJobs(8);
+            tuning.setBlockCacheSize(DataSize.ofMegabytes(64));
+            tuning.setBloomBitsPerKey(10);
+            tuning.setCompressionPerLevel(Arrays.asList(NO_COMPRESSION, NO_COMPRESSION,
+                    LZ4_COMPRESSION, LZ4_COMPRESSION, LZ4_COMPRESSION, LZ4_COMPRESSION, ZSTD_COMPRESSION));
+            return tuning;
+        }
+    },
+
+    /**
+     * Range scans: a large block cache and large blocks, no bloom filters (they do not help
+     * iterators) and compression everywhere to fit more keys per read.
+     */
+    SCAN_HEAVY {
+        @Override
+        RocksDBProperties.Tuning defaults() {
+            RocksDBProperties.Tuning tuning = new RocksDBProperties.Tuning();
+            tuning.setBlockCacheSize(DataSize.ofMegabytes(512));
+            tuning.setBlockSize(DataSize.ofKilobytes(64));
+            tuning.setBloomBitsPerKey(0);
+            tuning.setMaxBackgroundJobs(4);
+            tuning.setCompressionPerLevel(Arrays.asList(LZ4_COMPRESSION, LZ4_COMPRESSION,
+                    LZ4_COMPRESSION, LZ4_COMPRESSION, LZ4_COMPRESSION, LZ4_COMPRESSION, ZSTD_COMPRESSION));
+            return tuning;
+        }
+    };
+
+    abstract RocksDBProperties.Tuning defaults();
+}
@@ -0,0 +1,168 @@
+package io.github.erhwenkuo.rocksdbquickstart.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.AbstractNativeReference;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.Env;
+import org.rocksdb.LRUCache;
+import org.rocksdb.OptionsUtil;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Native RocksDB options built from {@link RocksDBProperties.Tuning}, or loaded from an
+ * OPTIONS file, together with the objects they point to (block cache, bloom filter).
+ *
+ * <p>The block cache is shared by all column families opened with these options. Nothing
+ * here may be closed while the database is open, {@link #close()} releases it all afterwards.
+ */
+@Slf4j
+public class RocksDBOptions implements AutoCloseable {
+    private final RocksDBProperties.Tuning tuning;
+    private final DBOptions dbOptions;
+    private final List<ColumnFamilyDescriptor> columnFamilyDescriptors = new ArrayList<>();
+    private final List<AbstractNativeReference> resources = new ArrayList<>();
+    private final LRUCache blockCache;
+    private final BloomFilter bloomFilter;
+
+    private RocksDBOptions(RocksDBProperties.Tuning tuning, DBOptions dbOptions) {
+        this.tuning = tuning;
+        this.dbOptions = dbOptions;
+        this.blockCache = tuning != null && tuning.getBlockCacheSize() != null
+                ? track(new LRUCache(tuning.getBlockCacheSize().toBytes()))
+                : null;
+        this.bloomFilter = tuning != null && tuning.getBloomBitsPerKey() != null && tuning.getBloomBitsPerKey() > 0
+                ? track(new BloomFilter(tuning.getBloomBitsPerKey(), false))
+                : null;
+    }
+
+    /**
+     * Builds the options for the configured profile and settings, or loads them from
+     * {@link RocksDBProperties.Tuning#getOptionsFile()} when one is configured.
+     */
+    public static RocksDBOptions create(RocksDBProperties.Tuning settings) throws RocksDBException {
+        RocksDB.loadLibrary();
+
+        if (settings.getOptionsFile() != null) {
+            log.info("Loading RocksDB options from '{}', rocksdb.options.* settings are not applied", settings.getOptionsFile());
+            RocksDBOptions options = new RocksDBOptions(null, new DBOptions());
+            OptionsUtil.loadOptionsFromFile(settings.getOptionsFile(), Env.getDefault(),
+                    options.dbOptions, options.columnFamilyDescriptors, false);
+            for (ColumnFamilyDescriptor descriptor : options.columnFamilyDescriptors) {
+                options.track(descriptor.getOptions());
+            }
+            // the one setting that is not tuning: the repository stores values in the operator's format
+            if (settings.getMergeOperator() != null)
+                options.columnFamilyDescriptors.get(0).getOptions().setMergeOperatorName(settings.getMergeOperator().getRocksDBName());
+            options.dbOptions.setCreateIfMissing(true).setCreateMissingColumnFamilies(true);
+            return options;
+        }
+
+        RocksDBProperties.Tuning tuning = settings.effective();
+        log.info("RocksDB options profile {}: {}", tuning.getProfile(), tuning);
+        RocksDBOptions options = new RocksDBOptions(tuning, new DBOptions());
+        options.dbOptions.setCreateIfMissing(true).setCreateMissingColumnFamilies(true);
+        if (tuning.getMaxBackgroundJobs() != null)
+            options.dbOptions.setMaxBackgroundJobs(tuning.getMaxBackgroundJobs());
+        options.columnFamilyDescriptors.add(
+                new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, options.newColumnFamilyOptions()));
+        return options;
+    }
+
+    public DBOptions getDbOptions() {
+        return dbOptions;
+    }
+
+    /**
+     * @return the column families to open the database with: the default one, plus any
+     * other listed in the OPTIONS file
+     */
+    public List<ColumnFamilyDescriptor> getColumnFamilyDescriptors() {
+        return Collections.unmodifiableList(columnFamilyDescriptors);
+    }
+
+    /**
+     * @return new column family options with the configured settings, owned (and closed) by
+     * this object
+     */
+    public ColumnFamilyOptions newColumnFamilyOptions() {
+        if (tuning == null) {
+            // loaded from an OPTIONS file, new column families look like the default one
+            return track(new ColumnFamilyOptions(columnFamilyDescriptors.get(0).getOptions()));
+        }
+        return columnFamilyOptions(tuning);
+    }
+
+    /**
+     * @param settings settings of one column family, the ones left unset (by them and their
+     *                 profile) are taken from the database wide settings; null for none
+     * @return new column family options, owned (and closed) by this object
+     */
+    public ColumnFamilyOptions newColumnFamilyOptions(RocksDBProperties.Tuning settings) {
+        if (settings == null) {
+            return newColumnFamilyOptions();
+        }
+        if (tuning == null) {
+            final ColumnFamilyOptions options = newColumnFamilyOptions();
+            return settings.getMergeOperator() != null
+                    ? options.setMergeOperatorName(settings.getMergeOperator().getRocksDBName())
+                    : options;
+        }
+        return columnFamilyOptions(settings.effective().withDefaults(tuning));
+    }
+
+    private ColumnFamilyOptions columnFamilyOptions(RocksDBProperties.Tuning tuning) {
+        // column families of the same block cache size and bloom bits share the cache and filter
+        final LRUCache cache = Objects.equals(tuning.getBlockCacheSize(), this.tuning.getBlockCacheSize())
+                ? blockCache
+                : track(new LRUCache(tuning.getBlockCacheSize().toBytes()));
+        final BloomFilter filter = Objects.equals(tuning.getBloomBitsPerKey(), this.tuning.getBloomBitsPerKey())
+                ? bloomFilter
+                : tuning.getBloomBitsPerKey() > 0 ? track(new BloomFilter(tuning.getBloomBitsPerKey(), false)) : null;
+
+        final ColumnFamilyOptions options = track(new ColumnFamilyOptions());
+        if (tuning.getOptimizeForPointLookup() != null) {
+            options.optimizeForPointLookup(tuning.getOptimizeForPointLookup().toMegabytes());
+        } else if (cache != null || filter != null || tuning.getBlockSize() != null) {
+            final BlockBasedTableConfig table = new BlockBasedTableConfig();
+            if (cache != null)
+                table.setBlockCache(cache);
+            if (filter != null)
+                table.setFilterPolicy(filter);
+            if (tuning.getBlockSize() != null)
+                table.setBlockSize(tuning.getBlockSize().toBytes());
+            options.setTableFormatConfig(table);
+        }
+        if (tuning.getCompressionPerLevel() != null)
+            options.setCompressionPerLevel(tuning.getCompressionPerLevel());
+        if (tuning.getWriteBufferSize() != null)
+            options.setWriteBufferSize(tuning.getWriteBufferSize().toBytes());
+        if (tuning.getPrefixLength() != null)
+            options.useFixedLengthPrefixExtractor(tuning.getPrefixLength());
+        if (tuning.getMergeOperator() != null)
+            options.setMergeOperatorName(tuning.getMergeOperator().getRocksDBName());
+        return options;
+    }
+
+    private <T extends AbstractNativeReference> T track(T resource) {
+        resources.add(resource);
+        return resource;
+    }
+
+    @Override
+    public void close() {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+        dbOptions.close();
+    }
+}
@@ -0,0 +1,400 @@
+package io.github.erhwenkuo.rocksdbquickstart.config;
+
+import io.github.erhwenkuo.rocksdbquickstart.repository.BatchMode;
+import lombok.Data;
+import org.rocksdb.CompressionType;
+import org.rocksdb.StatsLevel;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the RocksDB backed repository, bound from the {@code rocksdb.*} properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "rocksdb")
+public class RocksDBProperties {
+
+    /**
+     * Directory holding the database files.
+     */
+    private String dataDir = "/tmp/rocks/spring-boot-db";
+
+    /**
+     * Open the database as a TtlDB, so that namespaces with a {@code ttl} drop their expired
+     * entries during compaction. Every value then carries a write timestamp, so this is fixed
+     * when the database is created and cannot be switched for an existing one.
+     */
+    private boolean ttlEnabled = false;
+
+    private final Tuning options = new Tuning();
+
+    /**
+     * Options of the column family of each namespace, bound from
+     * {@code rocksdb.namespaces.<name>.*}. Settings left unset by a namespace and its profile
+     * are taken from {@link #options}.
+     */
+    private final Map<String, Tuning> namespaces = new LinkedHashMap<>();
+
+    /**
+     * Secondary indexes, bound from {@code rocksdb.indexes.<name>.*}: the keys of a namespace
+     * by the value of a field of their JSON documents, kept up to date by every write.
+     */
+    private final Map<String, Index> indexes = new LinkedHashMap<>();
+
+    private final Write write = new Write();
+
+    private final DirectBuffers directBuffers = new DirectBuffers();
+
+    private final Batch batch = new Batch();
+
+    private final MultiGet multiGet = new MultiGet();
+
+    private final Executor executor = new Executor();
+
+    private final Cache cache = new Cache();
+
+    private final Backup backup = new Backup();
+
+    private final Secondary secondary = new Secondary();
+
+    private final BulkLoad bulkLoad = new BulkLoad();
+
+    private final Shutdown shutdown = new Shutdown();
+
+    private final Statistics statistics = new Statistics();
+
+    /**
+     * RocksDB options, bound from {@code rocksdb.options.*}. Settings left unset come from
+     * the {@link #profile}, and RocksDB defaults apply to whatever the profile leaves unset too.
+     */
+    @Data
+    public static class Tuning {
+        private OptionsProfile profile = OptionsProfile.DEFAULT;
+
+        /**
+         * A RocksDB OPTIONS file (as written next to every database) to open the database
+         * with. When set, the file is used as is and the profile and settings below are ignored.
+         */
+        private String optionsFile;
+
+        /**
+         * Size of the LRU block cache.
+         */
+        private DataSize blockCacheSize;
+
+        /**
+         * Size of the data blocks.
+         */
+        private DataSize blockSize;
+
+        /**
+         * Bits per key of the bloom filters, 0 for no filters.
+         */
+        private Integer bloomBitsPerKey;
+
+        /**
+         * Compression of each level, starting with L0.
+         */
+        private List<CompressionType> compressionPerLevel;
+
+        private DataSize writeBufferSize;
+
+        private Integer maxBackgroundJobs;
+
+        /**
+         * Block cache size for {@code optimizeForPointLookup}, which sets up the table format
+         * for point lookups; the block cache and bloom settings above are then not applied.
+         */
+        private DataSize optimizeForPointLookup;
+
+        /**
+         * Length of a fixed-length prefix extractor, which makes prefix scans use prefix bloom
+         * filters.
+         */
+        private Integer prefixLength;
+
+        /**
+         * Time to live of the entries, hidden from reads once expired and, with
+         * {@code rocksdb.ttl-enabled}, dropped by the next compaction that sees them.
+         */
+        private Duration ttl;
+
+        /**
+         * Merge operator of the column family, which makes its values counters or appended
+         * lists. Unlike the settings above it is not inherited from the database wide options,
+         * and it cannot be changed once values were merged.
+         */
+        private MergeOperator mergeOperator;
+
+        /**
+         * @return these settings, with the unset ones taken from {@code defaults}, except for
+         * the merge operator
+         */
+        public Tuning withDefaults(Tuning defaults) {
+            Tuning tuning = new Tuning();
+            tuning.setProfile(profile);
+            tuning.setOptionsFile(optionsFile);
+            tuning.setBlockCacheSize(blockCacheSize != null ? blockCacheSize : defaults.getBlockCacheSize());
+            tuning.setBlockSize(blockSize != null ? blockSize : defaults.getBlockSize());
+            tuning.setBloomBitsPerKey(bloomBitsPerKey != null ? bloomBitsPerKey : defaults.getBloomBitsPerKey());
+            tuning.setCompressionPerLevel(compressionPerLevel != null ? compressionPerLevel : defaults.getCompressionPerLevel());
+            tuning.setWriteBufferSize(writeBufferSize != null ? writeBufferSize : defaults.getWriteBufferSize());
+            tuning.setMaxBackgroundJobs(maxBackgroundJobs != null ? maxBackgroundJobs : defaults.getMaxBackgroundJobs());
+            tuning.setOptimizeForPointLookup(optimizeForPointLookup != null ? optimizeForPointLookup : defaults.getOptimizeForPointLookup());
+            tuning.setPrefixLength(prefixLength != null ? prefixLength : defaults.getPrefixLength());
+            tuning.setTtl(ttl != null ? ttl : defaults.getTtl());
+            tuning.setMergeOperator(mergeOperator);
+            return tuning;
+        }
+
+        /**
+         * @return these settings completed by the profile's defaults
+         */
+        public Tuning effective() {
+            return withDefaults(profile.defaults());
+        }
+    }
+
+    /**
+     * How single key saves, merges and deletes are written.
+     */
+    @Data
+    public static class Write {
+        /**
+         * Sync the WAL before a write returns, so it survives a machine crash and not just a
+         * process crash.
+         */
+        private boolean sync = false;
+
+        /**
+         * Group concurrent saves, merges and deletes into one WriteBatch (group commit), which mostly
+         * pays off with {@link #sync}: one WAL sync then covers a whole group.
+         */
+        private boolean coalesce = false;
+
+        /**
+         * How long the first write of a group waits for more to arrive. With 0 a group is
+         * whatever queued up while the previous one was written, which under load already
+         * makes large groups without delaying anyone.
+         */
+        private Duration maxDelay = Duration.ZERO;
+
+        /**
+         * Most writes in one group.
+         */
+        private int maxBatch = 256;
+
+        /**
+         * Buffer the WAL in memory ({@code manual_wal_flush}) and write it out every
+         * {@link #walFlushInterval} and on close, instead of with every write: fewer write
+         * calls, but a process crash loses up to an interval of writes. Writes with
+         * {@link #sync} are still written and synced before they return.
+         */
+        private boolean manualWalFlush = false;
+
+        private Duration walFlushInterval = Duration.ofMillis(100);
+    }
+
+    /**
+     * What is written out before the database is closed on shutdown.
+     */
+    @Data
+    public static class Shutdown {
+        /**
+         * Flush the memtables when closing, so that the next start has no WAL to replay: a
+         * slower shutdown for a faster start. When false the database is opened with
+         * {@code avoid_flush_during_shutdown} and closing only syncs the WAL, which the next
+         * start replays. Either way no acknowledged write is lost.
+         */
+        private boolean flushMemtables = true;
+    }
+
+    /**
+     * Single key reads and writes through per-thread direct buffers and the ByteBuffer
+     * overloads of RocksDB get/put, instead of a new {@code byte[]} per key and value.
+     */
+    @Data
+    public static class DirectBuffers {
+        private boolean enabled = true;
+
+        /**
+         * Initial size of each thread's value buffer, which grows up to
+         * {@link #maxPooledSize} as larger values come by. Must be positive and at most
+         * {@link #maxPooledSize}.
+         */
+        private DataSize initialValueSize = DataSize.ofKilobytes(4);
+
+        /**
+         * Largest value buffer kept per thread, larger values get a buffer of their own.
+         * Bounds the direct memory held to this much per request thread.
+         */
+        private DataSize maxPooledSize = DataSize.ofMegabytes(1);
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * Maximum number of operations in one WriteBatch. Larger requests are rejected in
+         * atomic mode and split into several writes in chunked mode.
+         */
+        private int maxSize = 10_000;
+
+        /**
+         * Mode used when a batch request does not ask for one explicitly.
+         */
+        private BatchMode mode = BatchMode.CHUNKED;
+    }
+
+    @Data
+    public static class MultiGet {
+        /**
+         * Number of keys of a POST /api/_mget request looked up per MultiGet call; results
+         * are streamed back to the client after each chunk.
+         */
+        private int chunkSize = 1_000;
+    }
+
+    /**
+     * Dedicated pool the async API runs RocksDB calls on, so blocking JNI calls do not hold
+     * servlet container threads.
+     */
+    @Data
+    public static class Executor {
+        private int threads = Runtime.getRuntime().availableProcessors() * 2;
+
+        /**
+         * Calls waiting for a thread beyond this are rejected with 503 instead of queueing up.
+         */
+        private int queueCapacity = 10_000;
+    }
+
+    /**
+     * Online checkpoints and backups of the database, taken through the admin API.
+     */
+    @Data
+    public static class Backup {
+        /**
+         * Directory holding the checkpoints (each in a directory of its own) and the
+         * BackupEngine backups. On the filesystem of {@link #dataDir}, checkpoints hard link
+         * the SST files instead of copying them.
+         */
+        private String dir = "/tmp/rocks/spring-boot-db-backups";
+
+        /**
+         * Disk bandwidth backups may use per second, the rest is left to foreground reads and
+         * writes; 0 for no limit.
+         */
+        private DataSize rateLimit = DataSize.ofMegabytes(64);
+
+        /**
+         * Number of backups kept, older ones are purged after each new backup; 0 keeps all.
+         */
+        private int keep = 5;
+    }
+
+    /**
+     * Read replica mode: the database of another process (the primary, at {@link #dataDir})
+     * is opened as a read-only RocksDB secondary instance, which follows the primary's writes
+     * by catching up with it periodically. Writes are rejected, they go to the primary.
+     */
+    @Data
+    public static class Secondary {
+        private boolean enabled = false;
+
+        /**
+         * Directory of the secondary instance's own files (its info log), one per replica; a
+         * new temporary directory when unset.
+         */
+        private String path;
+
+        /**
+         * Time between two catch-ups with the primary, which bounds how far reads lag behind
+         * its writes. Namespaces the primary creates are only seen after a restart.
+         */
+        private Duration catchUpInterval = Duration.ofSeconds(1);
+    }
+
+    /**
+     * Imports through {@code POST /api/_import}, which sort the records into SST files and
+     * ingest those instead of writing them through the WAL and memtable.
+     */
+    @Data
+    public static class BulkLoad {
+        /**
+         * Size of the off-heap buffer records are sorted in, which makes one SST file. At
+         * most {@code threads + 1} buffers are used at once.
+         */
+        private DataSize runSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Number of SST files written in parallel.
+         */
+        private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        /**
+         * Directory of the SST files until they are ingested, {@code <data-dir>-bulk-load}
+         * when unset. On the filesystem of the database the files are moved in rather than
+         * copied.
+         */
+        private String dir;
+    }
+
+    /**
+     * RocksDB statistics (tickers such as block cache misses and stall time, and histograms of
+     * RocksDB's own operation latencies since the database was opened), published as
+     * {@code rocksdb.*} metrics.
+     */
+    @Data
+    public static class Statistics {
+        private boolean enabled = true;
+
+        /**
+         * What is measured: {@code EXCEPT_DETAILED_TIMERS} leaves out the timers of mutex waits
+         * and compression, whose clock reads cost the most; {@code ALL} includes them.
+         */
+        private StatsLevel level = StatsLevel.EXCEPT_DETAILED_TIMERS;
+    }
+
+    /**
+     * In-heap cache of decoded values in front of the repository, for keys read far more
+     * often than they are written.
+     */
+    @Data
+    public static class Cache {
+        private boolean enabled = false;
+
+        /**
+         * Bound on the estimated heap size of the cached values.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+
+        /**
+         * Entries are dropped this long after they were loaded, whether read since or not, or
+         * earlier when their value expires.
+         */
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+
+    /**
+     * A secondary index, queried through {@code GET /api/_index/{name}}. Namespaces with a
+     * merge operator or a ttl cannot be indexed, and indexed ones cannot be bulk loaded or
+     * saved with a ttl, as expired values would leave their index entries behind. Declaring an
+     * index for keys that already exist does not index them: they are indexed as they are
+     * written again.
+     */
+    @Data
+    public static class Index {
+        private String namespace = "default";
+
+        /**
+         * JSON Pointer of the field, e.g. {@code /address/city}. Values without a scalar
+         * there are not indexed.
+         */
+        private String field;
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs a random sample of the requests to the {@code access} logger: method, URI, status
+ * and duration, never keys' values. Requests that are not sampled cost one random number.
+ *
+ * <p>An async request (a streamed response, or a {@code CompletableFuture} of
+ * {@code /async/api}) is still running when the filter chain returns, it is logged when it
+ * completes, with its final status and whole duration.
+ *
+ * <p>The logger is routed through an async appender in {@code logback-spring.xml}, so a
+ * slow console or disk does not hold up request threads.
+ */
+@Component
+public class AccessLogFilter extends OncePerRequestFilter {
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger("access");
+
+    private final double sampleRate;
+
+    public AccessLogFilter(@Value("${access-log.sample-rate:0.01}") double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate || !ACCESS_LOG.isInfoEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted())
+                request.getAsyncContext().addListener(new CompletionLogger(request, response, start));
+            else
+                log(request, response, start);
+        }
+    }
+
+    private static void log(HttpServletRequest request, HttpServletResponse response, long start) {
+        ACCESS_LOG.info("{} {} {} {}us", request.getMethod(), request.getRequestURI(), response.getStatus(),
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+    }
+
+    // an async request completes after an error or a timeout as well, once their response is written
+    private static class CompletionLogger implements AsyncListener {
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long start;
+
+        CompletionLogger(HttpServletRequest request, HttpServletResponse response, long start) {
+            this.request = request;
+            this.response = response;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            log(request, response, start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        // a new async cycle of the request drops the listeners, the request is not done yet
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBBackups;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.RocksDBException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Operations on the database as a whole, taken while it keeps serving the KV API. Meant for
+ * operators only: expose it on an internal network, not next to {@code /api}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+    private final RocksDBBackups backups;
+
+    public AdminController(RocksDBBackups backups) {
+        this.backups = backups;
+    }
+
+    // Creates a checkpoint (an openable copy, SST files hard-linked) and returns its directory.
+    // curl -iv -X POST http://localhost:8080/admin/checkpoints
+    @PostMapping(value = "/checkpoints", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, String>> checkpoint() throws IOException, RocksDBException {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(Collections.singletonMap("path", backups.checkpoint().toString()));
+    }
+
+    // Creates an incremental, rate limited backup (rocksdb.backup.*), and returns it when done.
+    // curl -iv -X POST http://localhost:8080/admin/backups
+    @PostMapping(value = "/backups", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RocksDBBackups.Backup> backup() throws IOException, RocksDBException {
+        return ResponseEntity.status(HttpStatus.CREATED).body(backups.backup());
+    }
+
+    // curl -iv http://localhost:8080/admin/backups
+    @GetMapping(value = "/backups", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<RocksDBBackups.Backup> backups() throws IOException, RocksDBException {
+        return backups.backups();
+    }
+
+    @ExceptionHandler({RocksDBException.class, IOException.class})
+    public ResponseEntity<String> failed(Exception e) {
+        log.error("Admin operation failed", e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.erhwenkuo.rocksdbquickstart.repository.AsyncKVRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The single key API of {@link KVController}, served asynchronously: the servlet thread is
+ * released as soon as the RocksDB call is queued on {@link AsyncKVRepository}'s pool, and the
+ * response is written when it completes.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/async/api")
+public class AsyncKVController {
+    private final AsyncKVRepository<String, Object> repository;
+    private final JsonFactory jsonFactory;
+
+    public AsyncKVController(AsyncKVRepository<String, Object> repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    // curl -iv -X POST -H "Content-Type: application/json" -d '{"bar":"baz"}' http://localhost:8080/async/api/foo
+    @PostMapping(value = "/{key}",
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> save(@PathVariable("key") String key, @RequestBody byte[] value) {
+        JsonBodies.requireSingleValue(jsonFactory, value);
+        return repository.save(key, value).thenApply(saved -> saved
+                ? ResponseEntity.ok(value)
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    // curl -iv -X GET -H "Content-Type: application/json" http://localhost:8080/async/api/foo
+    @GetMapping(value = "/{key}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> find(@PathVariable("key") String key) {
+        return repository.find(key).thenApply(ResponseEntity::of);
+    }
+
+    // curl -iv -X DELETE -H "Content-Type: application/json" http://localhost:8080/async/api/foo
+    @DeleteMapping(value = "/{key}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<Object>> delete(@PathVariable("key") String key) {
+        return repository.delete(key).thenApply(deleted -> deleted
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler({RejectedExecutionException.class, CompletionException.class})
+    public ResponseEntity<Object> rejected(Exception e) {
+        if (e instanceof RejectedExecutionException || e.getCause() instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        log.error("Async repository call failed", e);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    }
+}
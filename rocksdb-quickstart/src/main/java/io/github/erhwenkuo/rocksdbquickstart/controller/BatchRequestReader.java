@@ -0,0 +1,122 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.erhwenkuo.rocksdbquickstart.repository.KVOperation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the operations of a batch request one at a time off a streaming JSON parser, so
+ * a request body of any size is never held in memory as a whole. The expected body is
+ * <pre>
+ * [{"op": "put", "key": "foo", "value": {"bar": "baz"}}, {"op": "delete", "key": "qux"}]
+ * </pre>
+ * Values are copied token by token into raw JSON bytes, the same form single key POSTs
+ * are stored in. Malformed input surfaces as {@link UncheckedIOException}.
+ */
+class BatchRequestReader implements Iterator<KVOperation<String, Object>> {
+    private final JsonFactory factory;
+    private final JsonParser parser;
+    private KVOperation<String, Object> next;
+    private boolean ended;
+    private boolean failed;
+
+    BatchRequestReader(JsonFactory factory, JsonParser parser) throws IOException {
+        this.factory = factory;
+        this.parser = parser;
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Batch request body must be a JSON array");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !ended) {
+            try {
+                next = readOperation();
+            } catch (IOException e) {
+                failed = true;
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public KVOperation<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        KVOperation<String, Object> operation = next;
+        next = null;
+        return operation;
+    }
+
+    /**
+     * @return whether reading an operation failed, the body is malformed from there on
+     */
+    boolean failed() {
+        return failed;
+    }
+
+    private KVOperation<String, Object> readOperation() throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            ended = true;
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a batch operation object");
+        }
+
+        String op = null;
+        String key = null;
+        byte[] value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "op":
+                    op = parser.getValueAsString();
+                    break;
+                case "key":
+                    key = parser.getValueAsString();
+                    break;
+                case "value":
+                    value = copyValue();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        if (key == null) {
+            throw new JsonParseException(parser, "Batch operation without a key");
+        }
+        if ("put".equals(op)) {
+            if (value == null) {
+                throw new JsonParseException(parser, "Put of key '" + key + "' without a value");
+            }
+            return KVOperation.put(key, value);
+        } else if ("delete".equals(op)) {
+            return KVOperation.delete(key);
+        }
+        throw new JsonParseException(parser, "Unknown batch operation '" + op + "'");
+    }
+
+    private byte[] copyValue() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return out.toByteArray();
+    }
+}
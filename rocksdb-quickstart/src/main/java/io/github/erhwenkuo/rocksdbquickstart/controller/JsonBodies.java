@@ -0,0 +1,46 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Checks of the request bodies stored as raw JSON bytes.
+ *
+ * <p>Those bytes are served back as they are, also inside the documents streamed by
+ * {@link RawJsonWriter}, so a body is only accepted if it is exactly one complete JSON value.
+ * The check is a streaming parse that builds no tree.
+ */
+final class JsonBodies {
+
+    private JsonBodies() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the body is empty, not well-formed JSON, or holds
+     *                                  more than one value
+     */
+    static byte[] requireSingleValue(JsonFactory jsonFactory, byte[] body) {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            int values = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                if (token == JsonToken.VALUE_STRING)
+                    parser.getTextLength(); // decodes the string, which checks its escapes
+                if (parser.getParsingContext().inRoot() && ++values > 1)
+                    throw new IllegalArgumentException("Request body holds more than one JSON value");
+            }
+            if (values == 0)
+                throw new IllegalArgumentException("Request body is empty");
+            return body;
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body is not valid JSON: " + e.getOriginalMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,43 +1,392 @@
 package io.github.erhwenkuo.rocksdbquickstart.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.BatchMode;
+import io.github.erhwenkuo.rocksdbquickstart.repository.BatchResult;
+import io.github.erhwenkuo.rocksdbquickstart.repository.BatchTooLargeException;
+import io.github.erhwenkuo.rocksdbquickstart.repository.BulkLoadResult;
 import io.github.erhwenkuo.rocksdbquickstart.repository.KVRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.ScanRequest;
+import io.github.erhwenkuo.rocksdbquickstart.repository.VersionConflictException;
+import io.github.erhwenkuo.rocksdbquickstart.repository.Versioned;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 @Slf4j
 @RestController
 @RequestMapping("/api")
 public class KVController {
+    private static final int SCAN_FLUSH_INTERVAL = 1_000;
+    private static final Pattern ETAG = Pattern.compile("\"([0-9a-f]{1,16})\"");
+
     private final KVRepository<String, Object> repository;
+    private final RocksDBProperties properties;
+    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
 
-    public KVController(KVRepository<String, Object> repository) {
+    public KVController(KVRepository<String, Object> repository, RocksDBProperties properties, ObjectMapper objectMapper) {
         this.repository = repository;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
     }
 
+    // Every endpoint also exists under /api/ns/{namespace}/..., which reads and writes the keys of that namespace
+    // (a column family of its own) instead of the default one.
+    // The JSON body is kept as raw bytes: it is checked to be one well-formed JSON value (400 otherwise), then stored
+    // and echoed back without being re-encoded.
     // curl -iv -X POST -H "Content-Type: application/json" -d '{"bar":"baz"}' http://localhost:8080/api/foo
-    @PostMapping(value = "/{key}",
+    // curl -iv -X POST -H "Content-Type: application/json" -d '{"bar":"baz"}' http://localhost:8080/api/ns/tenant1/foo
+    // With a time to live (e.g. 30s, 15m, PT1H) the key reads as absent once it expired.
+    // curl -iv -X POST -H "Content-Type: application/json" -d '{"bar":"baz"}' "http://localhost:8080/api/foo?ttl=15m"
+    // With If-Match (the ETag of a GET, or * for any existing value) or If-None-Match: * (no value yet) the save is a
+    // compare-and-set: it fails with 412 if the key is at another version, also if it was written concurrently.
+    // curl -iv -X POST -H "Content-Type: application/json" -H 'If-Match: "<ETag of a GET>"' -d '{"bar":"qux"}' http://localhost:8080/api/foo
+    @PostMapping(value = {"/{key}", "/ns/{namespace}/{key}"},
             consumes = MediaType.APPLICATION_JSON_VALUE,
             produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> save(@PathVariable("key") String key, @RequestBody Object value) {
-        return repository.save(key, value)
+    public ResponseEntity<Object> save(@PathVariable(value = "namespace", required = false) String namespace,
+                                       @PathVariable("key") String key,
+                                       @RequestParam(value = "ttl", required = false) String ttl,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                       @RequestBody byte[] value) {
+        JsonBodies.requireSingleValue(jsonFactory, value);
+        final KVRepository<String, Object> repository = repository(namespace);
+        if (ifMatch != null || ifNoneMatch != null) {
+            if (ttl != null)
+                throw new IllegalArgumentException("A ttl cannot be combined with If-Match or If-None-Match");
+            final OptionalLong version = repository.saveIfVersion(key, expectedVersion(repository, key, ifMatch, ifNoneMatch), value);
+            return version.isPresent()
+                    ? ResponseEntity.ok().eTag(etag(version.getAsLong())).body(value)
+                    : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        final boolean saved = ttl != null
+                ? repository.save(key, value, ttl(ttl))
+                : repository.save(key, value);
+        return saved
                 ? ResponseEntity.ok(value)
                 : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
     }
 
+    // The ETag is the version of the value, for a conditional save with If-Match. It hashes the stored bytes, so a
+    // value written back to what it was has its old ETag again.
     // curl -iv -X GET -H "Content-Type: application/json" http://localhost:8080/api/foo
-    @GetMapping(value = "/{key}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> find(@PathVariable("key") String key) {
-        return ResponseEntity.of(repository.find(key));
+    @GetMapping(value = {"/{key}", "/ns/{namespace}/{key}"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> find(@PathVariable(value = "namespace", required = false) String namespace, @PathVariable("key") String key) {
+        return repository(namespace).findVersioned(key)
+                .map(versioned -> ResponseEntity.ok().eTag(etag(versioned.getVersion())).body(versioned.getValue()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     // curl -iv -X DELETE -H "Content-Type: application/json" http://localhost:8080/api/foo
-    @DeleteMapping(value = "/{key}", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> delete(@PathVariable("key") String key) {
-        return repository.delete(key)
+    @DeleteMapping(value = {"/{key}", "/ns/{namespace}/{key}"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> delete(@PathVariable(value = "namespace", required = false) String namespace, @PathVariable("key") String key) {
+        return repository(namespace).delete(key)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    }
+
+    // Counters and lists updated without reading them first, in namespaces with a merge operator
+    // (rocksdb.namespaces.<name>.merge-operator). _incr adds "by" (default 1, may be negative) to a uint64add
+    // counter, which reads back as a number; saving a number sets it.
+    // curl -iv -X POST "http://localhost:8080/api/ns/counters/hits/_incr?by=5"
+    @PostMapping(value = {"/{key}/_incr", "/ns/{namespace}/{key}/_incr"})
+    public ResponseEntity<Object> increment(@PathVariable(value = "namespace", required = false) String namespace,
+                                            @PathVariable("key") String key,
+                                            @RequestParam(value = "by", defaultValue = "1") long by) {
+        return repository(namespace).merge(key, by)
                 ? ResponseEntity.noContent().build()
                 : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
     }
+
+    // _append adds a JSON document to a stringappend list, which reads back as a JSON array of the documents. The
+    // document must be one well-formed JSON value (400 otherwise): a merged operand stays in the list for good.
+    // curl -iv -X POST -H "Content-Type: application/json" -d '{"event":"login"}' http://localhost:8080/api/ns/lists/user1/_append
+    @PostMapping(value = {"/{key}/_append", "/ns/{namespace}/{key}/_append"}, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Object> append(@PathVariable(value = "namespace", required = false) String namespace,
+                                         @PathVariable("key") String key,
+                                         @RequestBody byte[] value) {
+        JsonBodies.requireSingleValue(jsonFactory, value);
+        return repository(namespace).merge(key, value)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    }
+
+    // The body is parsed as a stream and written in WriteBatches as it arrives, mode is "atomic" or "chunked". A body
+    // malformed past its first chunks gets 400 with the result: the operations it counts were applied.
+    // curl -iv -X POST -H "Content-Type: application/json" -d '[{"op":"put","key":"foo","value":{"bar":"baz"}},{"op":"delete","key":"qux"}]' "http://localhost:8080/api/_batch?mode=atomic"
+    @PostMapping(value = {"/_batch", "/ns/{namespace}/_batch"},
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchResult> batch(@PathVariable(value = "namespace", required = false) String namespace,
+                                             @RequestParam(value = "mode", required = false) String mode,
+                                             HttpServletRequest request) throws IOException {
+        BatchMode batchMode = mode != null ? batchMode(mode) : properties.getBatch().getMode();
+
+        try (JsonParser parser = jsonFactory.createParser(request.getInputStream())) {
+            BatchRequestReader operations = new BatchRequestReader(jsonFactory, parser);
+            BatchResult result = repository(namespace).write(operations, batchMode);
+            return result.isComplete()
+                    ? ResponseEntity.ok(result)
+                    : ResponseEntity.status(operations.failed() ? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+        }
+    }
+
+    // Imports puts in the _batch format as SST files, sorted off-heap and ingested without going through the WAL and
+    // memtable; much faster than _batch for large loads into keys nothing else writes meanwhile. Returns the number of
+    // records and bytes ingested and the MB/s of the whole import.
+    // curl -iv -X POST -H "Content-Type: application/json" --data-binary @export.json http://localhost:8080/api/_import
+    @PostMapping(value = {"/_import", "/ns/{namespace}/_import"},
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkLoadResult> bulkLoad(@PathVariable(value = "namespace", required = false) String namespace,
+                                                   HttpServletRequest request) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(request.getInputStream())) {
+            BulkLoadResult result = repository(namespace).bulkLoad(new BatchRequestReader(jsonFactory, parser));
+            return result.isComplete()
+                    ? ResponseEntity.ok(result)
+                    : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
+        }
+    }
+
+    // Returns a JSON object of the keys that exist, written out chunk by chunk as the MultiGets complete.
+    // curl -iv -X POST -H "Content-Type: application/json" -d '["foo","bar"]' http://localhost:8080/api/_mget
+    @PostMapping(value = {"/_mget", "/ns/{namespace}/_mget"},
+            consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> multiGet(@PathVariable(value = "namespace", required = false) String namespace,
+                                                          @RequestBody List<String> keys) {
+        final KVRepository<String, Object> repository = repository(namespace);
+        final List<String> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        final int chunkSize = properties.getMultiGet().getChunkSize();
+
+        StreamingResponseBody body = out -> {
+            RawJsonWriter writer = new RawJsonWriter(out, objectMapper);
+            writer.write('{');
+            boolean first = true;
+            for (int from = 0; from < distinctKeys.size(); from += chunkSize) {
+                List<String> chunk = distinctKeys.subList(from, Math.min(distinctKeys.size(), from + chunkSize));
+                for (Map.Entry<String, Object> entry : repository.findAll(chunk).entrySet()) {
+                    if (!first)
+                        writer.write(',');
+                    first = false;
+                    writer.writeString(entry.getKey()).write(':').writeValue(entry.getValue());
+                }
+                writer.flush();
+            }
+            writer.write('}');
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Streams {"entries":[{"key":..,"value":..},..],"next":token} in constant memory. When the limit cuts the
+    // scan short, "next" is an opaque token to pass back (with the same other parameters) for the next page.
+    // curl -iv "http://localhost:8080/api/_scan?prefix=foo&limit=100"
+    @GetMapping(value = {"/_scan", "/ns/{namespace}/_scan"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> scan(@PathVariable(value = "namespace", required = false) String namespace,
+                                                      @RequestParam(value = "from", required = false) String from,
+                                                      @RequestParam(value = "to", required = false) String to,
+                                                      @RequestParam(value = "prefix", required = false) String prefix,
+                                                      @RequestParam(value = "limit", defaultValue = "0") int limit,
+                                                      @RequestParam(value = "reverse", defaultValue = "false") boolean reverse,
+                                                      @RequestParam(value = "token", required = false) String token) {
+        final ScanRequest<String> request = ScanRequest.<String>builder()
+                .from(from)
+                .to(to)
+                .prefix(prefix)
+                .after(token != null ? decodeScanToken(token) : null)
+                .limit(Math.max(limit, 0))
+                .reverse(reverse)
+                .build();
+        final KVRepository<String, Object> repository = repository(namespace);
+
+        StreamingResponseBody body = out -> {
+            RawJsonWriter writer = new RawJsonWriter(out, objectMapper);
+            writer.write('{').writeString("entries").write(':').write('[');
+            int[] count = {0};
+            Optional<String> next;
+            try {
+                next = repository.scan(request, (key, value) -> {
+                    try {
+                        if (count[0] > 0)
+                            writer.write(',');
+                        writer.write('{').writeString("key").write(':').writeString(key)
+                                .write(',').writeString("value").write(':').writeValue(value).write('}');
+                        if (++count[0] % SCAN_FLUSH_INTERVAL == 0)
+                            writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.write(']').write(',').writeString("next").write(':');
+            if (next.isPresent())
+                writer.writeString(encodeScanToken(next.get()));
+            else
+                writer.writeValue(null);
+            writer.write('}');
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // The entries whose field indexed by rocksdb.indexes.<index> equals value, or starts with it with prefix=true, by
+    // field value then key; limit (default 100, 0 for all) caps the number of entries.
+    // curl -iv "http://localhost:8080/api/_index/city?value=Taipei"
+    // curl -iv "http://localhost:8080/api/ns/tenant1/_index/city?value=Tai&prefix=true&limit=10"
+    @GetMapping(value = {"/_index/{index}", "/ns/{namespace}/_index/{index}"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> findByIndex(@PathVariable(value = "namespace", required = false) String namespace,
+                                                             @PathVariable("index") String index,
+                                                             @RequestParam("value") String value,
+                                                             @RequestParam(value = "prefix", defaultValue = "false") boolean prefix,
+                                                             @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        // checked before the response starts, an unknown index is a 400 rather than a broken stream
+        final RocksDBProperties.Index definition = properties.getIndexes().get(index);
+        if (definition == null || !definition.getNamespace().equals(namespace != null ? namespace : RocksDBRepository.DEFAULT_NAMESPACE))
+            throw new IllegalArgumentException("No index " + index + " on this namespace");
+        final KVRepository<String, Object> repository = repository(namespace);
+
+        StreamingResponseBody body = out -> {
+            RawJsonWriter writer = new RawJsonWriter(out, objectMapper);
+            writer.write('{').writeString("entries").write(':').write('[');
+            int[] count = {0};
+            try {
+                repository.findByIndex(index, value, prefix, Math.max(limit, 0), (key, entry) -> {
+                    try {
+                        if (count[0] > 0)
+                            writer.write(',');
+                        writer.write('{').writeString("key").write(':').writeString(key)
+                                .write(',').writeString("value").write(':').writeValue(entry).write('}');
+                        if (++count[0] % SCAN_FLUSH_INTERVAL == 0)
+                            writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.write(']').write('}');
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Drops the namespace's column family with all its keys in one go.
+    // curl -iv -X DELETE http://localhost:8080/api/ns/tenant1
+    @DeleteMapping(value = "/ns/{namespace}")
+    public ResponseEntity<Object> dropNamespace(@PathVariable("namespace") String namespace) {
+        return repository.dropNamespace(namespace)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private KVRepository<String, Object> repository(String namespace) {
+        return namespace != null ? repository.namespace(namespace) : repository;
+    }
+
+    private static String etag(long version) {
+        return "\"" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * @return the version a conditional save expects the key at
+     * @throws VersionConflictException if no version can match, like a weak ETag or an If-Match: * of an absent key
+     */
+    private static long expectedVersion(KVRepository<String, Object> repository, String key, String ifMatch, String ifNoneMatch) {
+        if (ifMatch == null) {
+            if (!"*".equals(ifNoneMatch.trim()))
+                throw new IllegalArgumentException("Only If-None-Match: * is supported on save");
+            return Versioned.ABSENT;
+        }
+        if ("*".equals(ifMatch.trim())) {
+            return repository.findVersioned(key).map(Versioned::getVersion).orElseThrow(() -> new VersionConflictException(key));
+        }
+        final Matcher etag = ETAG.matcher(ifMatch.trim());
+        if (!etag.matches())
+            throw new VersionConflictException(key);
+        return Long.parseUnsignedLong(etag.group(1), 16);
+    }
+
+    private static Duration ttl(String ttl) {
+        Duration duration = DurationStyle.detectAndParse(ttl);
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive, got '" + ttl + "'");
+        }
+        return duration;
+    }
+
+    private static String encodeScanToken(String lastKey) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(UTF_8));
+    }
+
+    private static String decodeScanToken(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid scan token");
+        }
+    }
+
+    private static BatchMode batchMode(String mode) {
+        try {
+            return BatchMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown batch mode '" + mode + "'");
+        }
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<String> versionConflict(VersionConflictException e) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(e.getMessage());
+    }
+
+    // conditional saves and bulk loads on a TtlDB, and writes to a read-only secondary instance
+    @ExceptionHandler(UnsupportedOperationException.class)
+    public ResponseEntity<String> unsupported(UnsupportedOperationException e) {
+        return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(e.getMessage());
+    }
+
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<String> batchTooLarge(BatchTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+    }
+
+    @ExceptionHandler({JsonProcessingException.class, UncheckedIOException.class, IllegalArgumentException.class})
+    public ResponseEntity<String> badRequest(Exception e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
 }
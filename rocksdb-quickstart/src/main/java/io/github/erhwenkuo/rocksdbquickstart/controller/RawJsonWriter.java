@@ -0,0 +1,48 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes JSON straight to a response stream for the endpoints that stream many entries.
+ *
+ * <p>Values stored as raw JSON bytes are copied to the output as they are, anything else
+ * (e.g. entries written before the JSON passthrough existed) goes through Jackson.
+ */
+class RawJsonWriter {
+    private final OutputStream out;
+    private final ObjectMapper objectMapper;
+
+    RawJsonWriter(OutputStream out, ObjectMapper objectMapper) {
+        this.out = out;
+        this.objectMapper = objectMapper;
+    }
+
+    RawJsonWriter write(char c) throws IOException {
+        out.write(c);
+        return this;
+    }
+
+    RawJsonWriter writeString(String value) throws IOException {
+        out.write('"');
+        out.write(JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        out.write('"');
+        return this;
+    }
+
+    RawJsonWriter writeValue(Object value) throws IOException {
+        if (value instanceof byte[]) {
+            out.write((byte[]) value);
+        } else {
+            out.write(objectMapper.writeValueAsBytes(value));
+        }
+        return this;
+    }
+
+    void flush() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link KVRepository} calls on a bounded, dedicated thread pool and hands back
+ * {@link CompletableFuture}s, for callers that must not block on RocksDB's JNI calls.
+ *
+ * <p>The pool has a fixed number of threads and a bounded queue: when both are full the
+ * returned future fails with {@link RejectedExecutionException} right away, so a burst of
+ * requests cannot grow threads or memory without limit.
+ */
+@Slf4j
+@Component
+public class AsyncKVRepository<K, V> {
+    private final KVRepository<K, V> repository;
+    private final ExecutorService executor;
+
+    public AsyncKVRepository(KVRepository<K, V> repository, RocksDBProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        RocksDBProperties.Executor settings = properties.getExecutor();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(settings.getThreads(), settings.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                new NamedThreadFactory("rocksdb-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "rocksdb", Collections.emptyList());
+    }
+
+    public CompletableFuture<Boolean> save(K key, V value) {
+        return submit(() -> repository.save(key, value));
+    }
+
+    public CompletableFuture<Optional<V>> find(K key) {
+        return submit(() -> repository.find(key));
+    }
+
+    public CompletableFuture<Boolean> delete(K key) {
+        return submit(() -> repository.delete(key));
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("RocksDB executor did not finish pending calls within 10 seconds");
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
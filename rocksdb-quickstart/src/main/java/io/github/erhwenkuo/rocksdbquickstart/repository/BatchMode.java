@@ -0,0 +1,18 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+/**
+ * How {@link KVRepository#write} turns a stream of operations into WriteBatch writes.
+ */
+public enum BatchMode {
+    /**
+     * All operations go into a single WriteBatch: either all of them are applied or none.
+     * Batches above the configured maximum size are rejected.
+     */
+    ATOMIC,
+
+    /**
+     * Operations are written in WriteBatches of at most the configured maximum size. Each
+     * chunk is atomic on its own, a failure leaves the earlier chunks applied.
+     */
+    CHUNKED
+}
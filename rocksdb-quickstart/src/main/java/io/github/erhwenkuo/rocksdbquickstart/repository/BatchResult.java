@@ -0,0 +1,25 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import lombok.Value;
+
+/**
+ * Outcome of a {@link KVRepository#write batch write}.
+ */
+@Value
+public class BatchResult {
+    /**
+     * Number of operations that were written to the database.
+     */
+    long operations;
+
+    /**
+     * Number of WriteBatches the operations were written in.
+     */
+    int batches;
+
+    /**
+     * False if a write, or reading the operations, failed; in chunked mode the operations
+     * counted above stay applied.
+     */
+    boolean complete;
+}
@@ -0,0 +1,10 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+/**
+ * Thrown when an atomic batch holds more operations than a single WriteBatch may carry.
+ */
+public class BatchTooLargeException extends RuntimeException {
+    public BatchTooLargeException(int maxSize) {
+        super("Atomic batch exceeds the maximum of " + maxSize + " operations");
+    }
+}
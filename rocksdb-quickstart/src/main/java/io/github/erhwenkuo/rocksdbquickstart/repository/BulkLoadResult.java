@@ -0,0 +1,36 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import lombok.Value;
+
+/**
+ * Outcome of a {@link KVRepository#bulkLoad bulk load}.
+ */
+@Value
+public class BulkLoadResult {
+    /**
+     * Number of records ingested into the database, duplicate keys included.
+     */
+    long records;
+
+    /**
+     * Size of the keys and encoded values of those records.
+     */
+    long bytes;
+
+    /**
+     * Number of SST files the records were ingested as.
+     */
+    int files;
+
+    long elapsedMillis;
+
+    /**
+     * {@link #bytes} per second of the whole load, sorting and writing the files included.
+     */
+    double megabytesPerSecond;
+
+    /**
+     * False if the load failed; records of files ingested before the failure stay applied.
+     */
+    boolean complete;
+}
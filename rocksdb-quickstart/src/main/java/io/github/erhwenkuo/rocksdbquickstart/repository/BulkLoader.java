@@ -0,0 +1,347 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.SstFileWriter;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Loads a stream of puts into a column family as SST files, which are ingested instead of
+ * being written through the WAL and memtable, flushed and compacted.
+ *
+ * <p>Records are appended to a run, a direct buffer of {@code runSize} bytes holding keys and
+ * values back to back: off the heap, so that a large import does not churn the GC. A full run
+ * goes to one of {@code threads} writer threads while the next one fills. The writer sorts
+ * the run's record offsets by key and writes the records straight from the buffer to an SST
+ * file with an {@link SstFileWriter}, then hands the buffer back; at most {@code threads + 1}
+ * buffers are ever allocated.
+ *
+ * <p>Each file holds the key range of its run. When the input comes sorted, like an export
+ * of another database, the ranges do not overlap: the files are ingested together, in one
+ * atomic step, each into the lowest level it fits in, and nothing is compacted afterwards.
+ * Unsorted input makes overlapping files, ingested one at a time in the order of their runs
+ * into the upper levels, which compaction merges later. Either way the last put of a key
+ * wins, and wins over the values the column family had before.
+ *
+ * <p>(The {@link Buffer} casts keep the Java 8 method signatures when built on a newer JDK.)
+ */
+@Slf4j
+class BulkLoader {
+    private static final int RECORD_HEADER = 2 * Integer.BYTES;
+
+    private final RocksDB db;
+    private final ColumnFamilyHandle columnFamily;
+    private final Options sstOptions;
+    private final int runSize;
+    private final int threads;
+    private final Path dir;
+
+    BulkLoader(RocksDB db, ColumnFamilyHandle columnFamily, Options sstOptions, int runSize, int threads, Path dir) {
+        this.db = db;
+        this.columnFamily = columnFamily;
+        this.sstOptions = sstOptions;
+        this.runSize = runSize;
+        this.threads = threads;
+        this.dir = dir;
+    }
+
+    /**
+     * @param records puts only, consumed as the runs fill
+     * @param encoder encodes the values as stored
+     * @throws IllegalArgumentException if an operation is not a put or a record is larger
+     *                                  than a run; nothing is ingested then
+     */
+    BulkLoadResult load(Iterator<KVOperation<String, Object>> records, Function<Object, byte[]> encoder) {
+        final long start = System.nanoTime();
+        final BlockingQueue<Run> free = new ArrayBlockingQueue<>(threads + 1);
+        final List<Future<SstFile>> written = new ArrayList<>();
+        final ExecutorService writers = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "rocksdb-bulk-load");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long ingested = 0;
+        long ingestedBytes = 0;
+        int ingestedFiles = 0;
+        Path files = null;
+        try {
+            // a directory of its own, concurrent loads do not see each other's files
+            files = Files.createTempDirectory(Files.createDirectories(dir), "bulk-load");
+            final Path filesDir = files;
+            int allocated = 1;
+            Run run = new Run(runSize);
+            while (records.hasNext()) {
+                final KVOperation<String, Object> record = records.next();
+                if (record.getType() != KVOperation.Type.PUT)
+                    throw new IllegalArgumentException("A bulk load only takes puts, got a " + record.getType() + " of key " + record.getKey());
+                final byte[] key = record.getKey().getBytes(UTF_8);
+                final byte[] value = encoder.apply(record.getValue());
+                if (run.add(key, value))
+                    continue;
+                if (run.count == 0)
+                    throw new IllegalArgumentException("Record of key " + record.getKey() + " is larger than rocksdb.bulk-load.run-size");
+
+                final Run full = run;
+                final Path file = filesDir.resolve(written.size() + ".sst");
+                written.add(writers.submit(() -> write(full, file, free)));
+                run = free.poll();
+                if (run == null && allocated < threads + 1) {
+                    run = new Run(runSize);
+                    allocated++;
+                } else if (run == null) {
+                    run = free.take();
+                }
+                run.add(key, value);
+            }
+            if (run.count > 0) {
+                final Run last = run;
+                final Path file = filesDir.resolve(written.size() + ".sst");
+                written.add(writers.submit(() -> write(last, file, free)));
+            }
+
+            final List<SstFile> sstFiles = new ArrayList<>();
+            for (Future<SstFile> future : written) {
+                sstFiles.add(future.get());
+            }
+            try (final IngestExternalFileOptions ingestOptions = new IngestExternalFileOptions().setMoveFiles(true)) {
+                if (disjoint(sstFiles)) {
+                    final List<String> paths = new ArrayList<>();
+                    for (SstFile file : sstFiles) {
+                        paths.add(file.path.toString());
+                    }
+                    if (!paths.isEmpty())
+                        db.ingestExternalFile(columnFamily, paths, ingestOptions);
+                    for (SstFile file : sstFiles) {
+                        ingested += file.records;
+                        ingestedBytes += file.bytes;
+                        ingestedFiles++;
+                    }
+                } else {
+                    for (SstFile file : sstFiles) {
+                        db.ingestExternalFile(columnFamily, Collections.singletonList(file.path.toString()), ingestOptions);
+                        ingested += file.records;
+                        ingestedBytes += file.bytes;
+                        ingestedFiles++;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted bulk load after {} ingested records", ingested);
+            return result(ingested, ingestedBytes, ingestedFiles, start, false);
+        } catch (ExecutionException e) {
+            log.error("Error writing an SST file of a bulk load, cause: '{}', message: '{}'", e.getCause(), e.getCause().getMessage());
+            return result(ingested, ingestedBytes, ingestedFiles, start, false);
+        } catch (IOException | RocksDBException e) {
+            log.error("Error bulk loading after {} ingested records, cause: '{}', message: '{}'", ingested, e.getCause(), e.getMessage());
+            return result(ingested, ingestedBytes, ingestedFiles, start, false);
+        } finally {
+            stop(writers);
+            if (files != null)
+                FileSystemUtils.deleteRecursively(files.toFile());
+        }
+
+        final BulkLoadResult result = result(ingested, ingestedBytes, ingestedFiles, start, true);
+        log.info("Bulk loaded {} records ({} bytes) as {} SST files in {} ms, {} MB/s", result.getRecords(),
+                result.getBytes(), result.getFiles(), result.getElapsedMillis(), String.format("%.1f", result.getMegabytesPerSecond()));
+        return result;
+    }
+
+    private static BulkLoadResult result(long records, long bytes, int files, long startNanos, boolean complete) {
+        final long nanos = System.nanoTime() - startNanos;
+        return new BulkLoadResult(records, bytes, files, nanos / 1_000_000,
+                nanos > 0 ? bytes / (nanos / 1e9) / (1 << 20) : 0, complete);
+    }
+
+    // sorts a run and writes it to an SST file, the buffer goes back to the pool
+    private SstFile write(Run run, Path path, BlockingQueue<Run> free) throws RocksDBException {
+        try {
+            run.sort();
+            run.writeTo(path, sstOptions);
+            return new SstFile(path, run.key(0), run.key(run.count - 1), run.count, run.bytes);
+        } finally {
+            run.clear();
+            free.add(run);
+        }
+    }
+
+    // whether every file's keys come after those of the one before
+    private static boolean disjoint(List<SstFile> files) {
+        for (int i = 1; i < files.size(); i++) {
+            if (RocksDBRepository.compare(files.get(i - 1).lastKey, files.get(i).firstKey) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    // lets files being written finish, before their directory is deleted
+    private static void stop(ExecutorService writers) {
+        writers.shutdownNow();
+        try {
+            writers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * An SST file written from a run, its key range and the records it was written from.
+     */
+    private static final class SstFile {
+        final Path path;
+        final byte[] firstKey;
+        final byte[] lastKey;
+        final long records;
+        final long bytes;
+
+        SstFile(Path path, byte[] firstKey, byte[] lastKey, long records, long bytes) {
+            this.path = path;
+            this.firstKey = firstKey;
+            this.lastKey = lastKey;
+            this.records = records;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Records in a direct buffer, each a key length, a value length, the key and the value,
+     * and their offsets. Cleared and reused once written.
+     */
+    private static final class Run {
+        final ByteBuffer buffer;
+        int[] offsets = new int[1024];
+        int[] scratch = new int[0];
+        int count;
+        long bytes;
+
+        Run(int size) {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        boolean add(byte[] key, byte[] value) {
+            if (buffer.remaining() < RECORD_HEADER + key.length + value.length)
+                return false;
+            if (count == offsets.length)
+                offsets = Arrays.copyOf(offsets, count * 2);
+            offsets[count++] = buffer.position();
+            buffer.putInt(key.length).putInt(value.length).put(key).put(value);
+            bytes += key.length + value.length;
+            return true;
+        }
+
+        /**
+         * Stable merge sort of the offsets by key, so that the puts of a key stay in order.
+         */
+        void sort() {
+            if (scratch.length < count)
+                scratch = new int[offsets.length];
+            int[] from = offsets;
+            int[] to = scratch;
+            for (int width = 1; width < count; width *= 2) {
+                for (int low = 0; low < count; low += 2 * width) {
+                    final int middle = Math.min(low + width, count);
+                    final int high = Math.min(low + 2 * width, count);
+                    int i = low, j = middle, k = low;
+                    while (i < middle && j < high)
+                        to[k++] = compareKeys(from[j], from[i]) < 0 ? from[j++] : from[i++];
+                    while (i < middle)
+                        to[k++] = from[i++];
+                    while (j < high)
+                        to[k++] = from[j++];
+                }
+                final int[] swap = from;
+                from = to;
+                to = swap;
+            }
+            offsets = from;
+            scratch = to;
+        }
+
+        void writeTo(Path path, Options options) throws RocksDBException {
+            final ByteBuffer key = buffer.duplicate();
+            final ByteBuffer value = buffer.duplicate();
+            try (final EnvOptions envOptions = new EnvOptions();
+                 final SstFileWriter writer = new SstFileWriter(envOptions, options)) {
+                writer.open(path.toString());
+                for (int i = 0; i < count; i++) {
+                    final int offset = offsets[i];
+                    // the last put of a key wins, keys of an SST file are unique
+                    if (i + 1 < count && compareKeys(offset, offsets[i + 1]) == 0)
+                        continue;
+                    final int keyStart = offset + RECORD_HEADER;
+                    final int valueStart = keyStart + buffer.getInt(offset);
+                    ((Buffer) key).clear();
+                    ((Buffer) key).position(keyStart).limit(valueStart);
+                    ((Buffer) value).clear();
+                    ((Buffer) value).position(valueStart).limit(valueStart + buffer.getInt(offset + Integer.BYTES));
+                    writer.put(key, value);
+                }
+                writer.finish();
+            }
+        }
+
+        void clear() {
+            ((Buffer) buffer).clear();
+            count = 0;
+            bytes = 0;
+        }
+
+        // the key of the record at index i of the offsets
+        byte[] key(int i) {
+            final int offset = offsets[i];
+            final byte[] key = new byte[buffer.getInt(offset)];
+            final ByteBuffer source = buffer.duplicate();
+            ((Buffer) source).position(offset + RECORD_HEADER);
+            source.get(key);
+            return key;
+        }
+
+        // RocksDB's bytewise order, 8 bytes at a time: big endian longs compare like their bytes
+        private int compareKeys(int a, int b) {
+            final int aLength = buffer.getInt(a);
+            final int bLength = buffer.getInt(b);
+            final int length = Math.min(aLength, bLength);
+            a += RECORD_HEADER;
+            b += RECORD_HEADER;
+            int i = 0;
+            for (; i + Long.BYTES <= length; i += Long.BYTES) {
+                final long x = buffer.getLong(a + i);
+                final long y = buffer.getLong(b + i);
+                if (x != y)
+                    return Long.compareUnsigned(x, y);
+            }
+            for (; i < length; i++) {
+                final int diff = (buffer.get(a + i) & 0xFF) - (buffer.get(b + i) & 0xFF);
+                if (diff != 0)
+                    return diff;
+            }
+            return aLength - bLength;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-through cache of decoded values in front of the RocksDB repository, enabled with
+ * {@code rocksdb.cache.enabled=true}. Hot keys are then served from the heap without a JNI
+ * call, a copy and a decode.
+ *
+ * <p>The cache is a Caffeine cache: W-TinyLFU admission keeps one-off reads from pushing out
+ * the hot keys, entries are bounded by an estimate of their heap size and expire after the
+ * configured TTL, or when their value expires if it was saved with a time to live. Writes go to RocksDB first and invalidate the key afterwards; a load racing
+ * with the write is either invalidated with it or reads the new value. Absent keys are not
+ * cached. Values are cached with their version, which serves {@link #findVersioned} too.
+ * Cached values are shared between callers and must not be modified. Only the default
+ * namespace is cached, other {@link #namespace(String)} views go straight to RocksDB.
+ *
+ * <p>Hit, miss and eviction counts are published as the {@code cache.*} metrics tagged
+ * {@code cache=rocksdb}.
+ */
+@Primary
+@Repository
+@ConditionalOnProperty(prefix = "rocksdb.cache", name = "enabled", havingValue = "true")
+public class CachingKVRepository implements KVRepository<String, Object> {
+    private final KVRepository<String, Object> repository;
+    private final Cache<String, Versioned<Object>> cache;
+
+    public CachingKVRepository(@Qualifier("rocksDBRepository") KVRepository<String, Object> repository,
+                               RocksDBProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        RocksDBProperties.Cache settings = properties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getMaxSize().toBytes())
+                .weigher(CachingKVRepository::weigh)
+                .expireAfter(new ValueExpiry(settings.getTtl()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "rocksdb");
+    }
+
+    @Override
+    public boolean save(String key, Object value) {
+        boolean saved = repository.save(key, value);
+        cache.invalidate(key);
+        return saved;
+    }
+
+    @Override
+    public boolean save(String key, Object value, Duration ttl) {
+        boolean saved = repository.save(key, value, ttl);
+        cache.invalidate(key);
+        return saved;
+    }
+
+    @Override
+    public Optional<Object> find(String key) {
+        return findVersioned(key).map(Versioned::getValue);
+    }
+
+    @Override
+    public Optional<Versioned<Object>> findVersioned(String key) {
+        return Optional.ofNullable(cache.get(key, k -> repository.findVersioned(k).orElse(null)));
+    }
+
+    @Override
+    public OptionalLong saveIfVersion(String key, long expectedVersion, Object value) {
+        try {
+            return repository.saveIfVersion(key, expectedVersion, value);
+        } finally {
+            // also after a conflict, the cached version may be the outdated one
+            cache.invalidate(key);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        boolean deleted = repository.delete(key);
+        cache.invalidate(key);
+        return deleted;
+    }
+
+    @Override
+    public Map<String, Object> findAll(Collection<String> keys) {
+        Map<String, Versioned<Object>> cached = cache.getAllPresent(keys);
+
+        List<String> missing = new ArrayList<>(keys.size() - cached.size());
+        for (String key : keys) {
+            if (!cached.containsKey(key))
+                missing.add(key);
+        }
+        Map<String, Object> loaded = missing.isEmpty() ? Collections.emptyMap() : repository.findAll(missing);
+        // values read by multiGet are not cached: a concurrent write could not invalidate them
+
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String key : keys) {
+            Object value = cached.containsKey(key) ? cached.get(key).getValue() : loaded.get(key);
+            if (value != null)
+                values.put(key, value);
+        }
+        return values;
+    }
+
+    @Override
+    public boolean merge(String key, Object operand) {
+        boolean merged = repository.merge(key, operand);
+        cache.invalidate(key);
+        return merged;
+    }
+
+    @Override
+    public BatchResult write(Iterator<KVOperation<String, Object>> operations, BatchMode mode) {
+        List<String> keys = new ArrayList<>();
+        try {
+            return repository.write(new Iterator<KVOperation<String, Object>>() {
+                @Override
+                public boolean hasNext() {
+                    return operations.hasNext();
+                }
+
+                @Override
+                public KVOperation<String, Object> next() {
+                    KVOperation<String, Object> operation = operations.next();
+                    keys.add(operation.getKey());
+                    return operation;
+                }
+            }, mode);
+        } finally {
+            // also after a failed write, some chunks may have been written
+            cache.invalidateAll(keys);
+        }
+    }
+
+    @Override
+    public BulkLoadResult bulkLoad(Iterator<KVOperation<String, Object>> records) {
+        try {
+            return repository.bulkLoad(records);
+        } finally {
+            // keys are not collected, a load may hold millions of them
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public Optional<String> scan(ScanRequest<String> request, BiConsumer<String, Object> visitor) {
+        return repository.scan(request, visitor);
+    }
+
+    @Override
+    public void findByIndex(String index, String value, boolean prefix, int limit, BiConsumer<String, Object> visitor) {
+        repository.findByIndex(index, value, prefix, limit, visitor);
+    }
+
+    @Override
+    public KVRepository<String, Object> namespace(String namespace) {
+        return RocksDBRepository.DEFAULT_NAMESPACE.equals(namespace) ? this : repository.namespace(namespace);
+    }
+
+    @Override
+    public boolean dropNamespace(String namespace) {
+        return repository.dropNamespace(namespace);
+    }
+
+    /**
+     * Rough heap size of a cached entry in bytes: object headers and references of the JDK
+     * types the codecs decode to, plus the bytes of their contents.
+     */
+    // An entry expires after the configured TTL, or earlier when its value does. Reads do not extend it.
+    private static class ValueExpiry implements Expiry<String, Versioned<Object>> {
+        private final long ttlNanos;
+
+        ValueExpiry(Duration ttl) {
+            this.ttlNanos = ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Versioned<Object> value, long currentTime) {
+            if (value.getExpiresAtMillis() == Versioned.NEVER)
+                return ttlNanos;
+            long remainingMillis = value.getExpiresAtMillis() - System.currentTimeMillis();
+            return Math.max(0, Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis)));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Versioned<Object> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Versioned<Object> value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    static int weigh(Object key, Object value) {
+        long size = sizeOf(key) + sizeOf(value) + 64;
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Versioned) {
+            return 32 + sizeOf(((Versioned<?>) value).getValue());
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        } else if (value instanceof Collection) {
+            long size = 24 + 8L * ((Collection<?>) value).size();
+            for (Object item : (Collection<?>) value) {
+                size += sizeOf(item);
+            }
+            return size;
+        } else if (value instanceof Map) {
+            long size = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += 40 + sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+            }
+            return size;
+        }
+        return 24;
+    }
+}
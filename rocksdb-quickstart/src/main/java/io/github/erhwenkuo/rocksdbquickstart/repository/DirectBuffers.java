@@ -0,0 +1,105 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Per-thread direct buffers for the {@code ByteBuffer} overloads of RocksDB get/put, which
+ * hand native memory to RocksDB instead of copying {@code byte[]}s across JNI.
+ *
+ * <p>Each thread keeps one key and one value buffer and grows them on demand, up to
+ * {@code maxPooledSize}; larger values get a one-off buffer. Keys are encoded as UTF-8, like
+ * everywhere else in the repository, ASCII keys without allocating anything.
+ *
+ * <p>Buffers are returned cleared and stay owned by the calling thread: they are only valid
+ * until its next call. (The {@link Buffer} casts keep the Java 8 method signatures when built
+ * on a newer JDK.)
+ */
+final class DirectBuffers {
+    private final int initialSize;
+    private final int maxPooledSize;
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    /**
+     * @throws IllegalArgumentException if {@code initialSize} is not positive or larger than
+     *                                  {@code maxPooledSize}
+     */
+    DirectBuffers(int initialSize, int maxPooledSize) {
+        if (initialSize <= 0)
+            throw new IllegalArgumentException("rocksdb.direct-buffers.initial-value-size must be positive, got " + initialSize);
+        if (maxPooledSize < initialSize)
+            throw new IllegalArgumentException("rocksdb.direct-buffers.max-pooled-size (" + maxPooledSize
+                    + ") must be at least the initial-value-size (" + initialSize + ")");
+        this.initialSize = initialSize;
+        this.maxPooledSize = maxPooledSize;
+    }
+
+    /**
+     * @return the thread's key buffer holding the encoded key, ready to be read
+     */
+    ByteBuffer key(String key) {
+        final Buffers local = buffers.get();
+        ByteBuffer buffer = local.key;
+        while (!encode(key, buffer, local)) {
+            buffer = local.key = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+
+    /**
+     * @return the thread's value buffer, or a new one if {@code minSize} is beyond the pooled
+     * size, cleared and with room for at least {@code minSize} bytes
+     */
+    ByteBuffer value(int minSize) {
+        final Buffers local = buffers.get();
+        if (minSize <= local.value.capacity()) {
+            ((Buffer) local.value).clear();
+            return local.value;
+        }
+        if (minSize > maxPooledSize) {
+            return ByteBuffer.allocateDirect(minSize);
+        }
+        int size = local.value.capacity();
+        while (size < minSize) {
+            size = (int) Math.min(size * 2L, maxPooledSize);
+        }
+        return local.value = ByteBuffer.allocateDirect(size);
+    }
+
+    private static boolean encode(String key, ByteBuffer buffer, Buffers local) {
+        ((Buffer) buffer).clear();
+        final int length = key.length();
+        if (length > buffer.capacity())
+            return false;
+        int i = 0;
+        for (; i < length; i++) {
+            char c = key.charAt(i);
+            if (c >= 0x80)
+                break;
+            buffer.put((byte) c);
+        }
+        if (i == length)
+            return true;
+        ((Buffer) buffer).clear();
+
+        final CharsetEncoder encoder = local.encoder.reset();
+        final CoderResult result = encoder.encode(CharBuffer.wrap(key), buffer, true);
+        return !result.isOverflow() && !encoder.flush(buffer).isOverflow();
+    }
+
+    private final class Buffers {
+        // replaces unpaired surrogates, like String.getBytes(UTF_8)
+        final CharsetEncoder encoder = UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer key = ByteBuffer.allocateDirect(256);
+        ByteBuffer value = ByteBuffer.allocateDirect(initialSize);
+    }
+}
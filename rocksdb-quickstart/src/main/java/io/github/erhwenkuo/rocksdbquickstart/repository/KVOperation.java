@@ -0,0 +1,23 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import lombok.Value;
+
+/**
+ * A single put or delete of a batch write.
+ */
+@Value
+public class KVOperation<K, V> {
+    public enum Type { PUT, DELETE }
+
+    Type type;
+    K key;
+    V value;
+
+    public static <K, V> KVOperation<K, V> put(K key, V value) {
+        return new KVOperation<>(Type.PUT, key, value);
+    }
+
+    public static <K, V> KVOperation<K, V> delete(K key) {
+        return new KVOperation<>(Type.DELETE, key, null);
+    }
+}
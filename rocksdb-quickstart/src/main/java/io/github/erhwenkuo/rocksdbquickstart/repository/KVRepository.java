@@ -1,9 +1,114 @@
 package io.github.erhwenkuo.rocksdbquickstart.repository;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.BiConsumer;
 
 public interface KVRepository<K, V> {
     boolean save(K key, V value);
+
+    /**
+     * Saves a value that reads as absent once {@code ttl} has passed, or the time to live of
+     * the namespace if that is shorter.
+     */
+    boolean save(K key, V value, Duration ttl);
+
     Optional<V> find(K key);
+
+    /**
+     * @return the value of a key together with its current version, see {@link #saveIfVersion}
+     */
+    Optional<Versioned<V>> findVersioned(K key);
+
+    /**
+     * Saves a value only if the key is still at {@code expectedVersion}, or does not exist yet
+     * for {@link Versioned#ABSENT} (compare-and-set). Nothing is locked: the write is an
+     * optimistic transaction, whose commit fails if the key was written after it was read.
+     * Versions identify the stored bytes, see {@link Versioned#getVersion} for a key that was
+     * written back to an earlier value.
+     *
+     * @return the new version of the key, empty if the write failed
+     * @throws VersionConflictException if the key is at another version, or was written
+     *                                  concurrently
+     * @throws UnsupportedOperationException if the database is a TtlDB, which has no transactions
+     */
+    OptionalLong saveIfVersion(K key, long expectedVersion, V value);
     boolean delete(K key);
+
+    /**
+     * Looks up many keys with a single MultiGet.
+     *
+     * @return the values of the keys that exist, in the iteration order of {@code keys}
+     */
+    Map<K, V> findAll(Collection<K> keys);
+
+    /**
+     * Folds an operand into the value of a key with the merge operator of the namespace,
+     * without reading the key: an integer is added to a {@code uint64add} counter, which reads
+     * back as a {@link Long}; a JSON document is appended to a {@code stringappend} list,
+     * which reads back as a JSON array of the documents.
+     *
+     * @throws IllegalArgumentException if the namespace has no merge operator, or the operand
+     *                                  does not fit it
+     */
+    boolean merge(K key, V operand);
+
+    /**
+     * Applies a stream of puts and deletes as one or several WriteBatch writes. The
+     * operations are consumed lazily, so the caller can feed them straight from a request body.
+     * If reading them fails with an {@link java.io.UncheckedIOException}, the write stops there
+     * and returns an incomplete result counting the operations already written.
+     *
+     * @throws BatchTooLargeException in {@link BatchMode#ATOMIC} mode, if there are more
+     *                                operations than fit in a single batch
+     */
+    BatchResult write(Iterator<KVOperation<K, V>> operations, BatchMode mode);
+
+    /**
+     * Loads a stream of puts as SST files ingested into the database, bypassing the WAL and
+     * memtable: for imports far larger than a batch, into keys nothing else writes meanwhile.
+     * The records are consumed lazily; of several puts of a key the last one wins, also over
+     * the value the key had before.
+     *
+     * @throws IllegalArgumentException if an operation is not a put
+     * @throws UnsupportedOperationException if the database is a TtlDB, which cannot ingest files
+     */
+    BulkLoadResult bulkLoad(Iterator<KVOperation<K, V>> records);
+
+    /**
+     * Visits the entries of a key range in order, one at a time, without collecting them.
+     *
+     * @return the last visited key if the scan stopped at {@link ScanRequest#getLimit()}
+     * with entries left, to be passed as {@link ScanRequest#getAfter()} to continue
+     */
+    Optional<K> scan(ScanRequest<K> request, BiConsumer<K, V> visitor);
+
+    /**
+     * Visits the entries whose field indexed by {@code index} equals {@code value}, or starts
+     * with it if {@code prefix} is set, in index order: by field value, then by key. The keys
+     * come from a prefix iteration of the index and their values from MultiGets, without
+     * scanning the namespace.
+     *
+     * @param limit most entries to visit, 0 for all
+     * @throws IllegalArgumentException if the namespace has no index of that name
+     */
+    void findByIndex(String index, String value, boolean prefix, int limit, BiConsumer<K, V> visitor);
+
+    /**
+     * @return a repository of the keys of {@code namespace}, which are kept apart from those
+     * of every other namespace; the namespace is created on its first write
+     * @throws IllegalArgumentException if the name is not 1 to 64 of {@code [A-Za-z0-9_-]}
+     */
+    KVRepository<K, V> namespace(String namespace);
+
+    /**
+     * Deletes a namespace with all its keys at once, without deleting them one by one.
+     *
+     * @return false if the namespace did not exist
+     */
+    boolean dropNamespace(String namespace);
 }
@@ -0,0 +1,166 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.BackupEngine;
+import org.rocksdb.BackupInfo;
+import org.rocksdb.BackupableDBOptions;
+import org.rocksdb.Checkpoint;
+import org.rocksdb.Env;
+import org.rocksdb.RocksDBException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online copies of the {@link RocksDBRepository} database, taken while it keeps serving reads
+ * and writes.
+ *
+ * <p>A checkpoint is a database of its own in a new directory, which can be opened as is.
+ * Its SST files are hard links when on the same filesystem, so it takes next to no time or
+ * space, until compaction replaces the linked files. A backup goes through a BackupEngine:
+ * backups are incremental (SST files already backed up are shared, not copied again) and
+ * their copying is rate limited, so that it does not take the disk bandwidth foreground
+ * reads and writes need.
+ */
+@Slf4j
+@Component
+public class RocksDBBackups {
+    private static final DateTimeFormatter CHECKPOINT_NAME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+
+    private final RocksDBRepository repository;
+    private final RocksDBProperties.Backup settings;
+    private final Timer checkpointTimer;
+    private final Timer backupTimer;
+    private BackupableDBOptions backupOptions;
+    private BackupEngine backupEngine;
+
+    public RocksDBBackups(RocksDBRepository repository, RocksDBProperties properties, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.settings = properties.getBackup();
+        this.checkpointTimer = timer(meterRegistry, "checkpoint");
+        this.backupTimer = timer(meterRegistry, "backup");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String type) {
+        return Timer.builder("rocksdb.backup")
+                .description("Duration of online checkpoints and backups")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates a checkpoint in a new directory under {@code <rocksdb.backup.dir>/checkpoints}.
+     *
+     * @return the directory of the checkpoint
+     */
+    public synchronized Path checkpoint() throws IOException, RocksDBException {
+        final Path parent = Paths.get(settings.getDir(), "checkpoints");
+        Files.createDirectories(parent);
+        final Path target = parent.resolve(CHECKPOINT_NAME.format(Instant.now()));
+
+        final long start = System.nanoTime();
+        try (final Checkpoint checkpoint = Checkpoint.create(repository.db)) {
+            checkpoint.createCheckpoint(target.toString());
+        } finally {
+            checkpointTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.info("Created checkpoint {}", target);
+        return target;
+    }
+
+    /**
+     * Flushes the memtables and backs up the database under
+     * {@code <rocksdb.backup.dir>/backups}, then purges the backups beyond
+     * {@code rocksdb.backup.keep}.
+     *
+     * @return the new backup
+     */
+    public synchronized Backup backup() throws IOException, RocksDBException {
+        final BackupEngine engine = backupEngine();
+
+        final long start = System.nanoTime();
+        try {
+            engine.createNewBackup(repository.db, true);
+        } finally {
+            backupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (settings.getKeep() > 0)
+            engine.purgeOldBackups(settings.getKeep());
+
+        final List<BackupInfo> backups = engine.getBackupInfo();
+        final Backup backup = Backup.of(backups.get(backups.size() - 1));
+        log.info("Created backup {}", backup);
+        return backup;
+    }
+
+    /**
+     * @return the backups kept, oldest first
+     */
+    public synchronized List<Backup> backups() throws IOException, RocksDBException {
+        final List<Backup> backups = new ArrayList<>();
+        for (BackupInfo info : backupEngine().getBackupInfo()) {
+            backups.add(Backup.of(info));
+        }
+        return backups;
+    }
+
+    // opened on first use, not every service takes backups
+    private BackupEngine backupEngine() throws IOException, RocksDBException {
+        if (backupEngine == null) {
+            final Path dir = Paths.get(settings.getDir(), "backups");
+            Files.createDirectories(dir);
+            backupOptions = new BackupableDBOptions(dir.toString())
+                    .setBackupRateLimit(settings.getRateLimit().toBytes());
+            backupEngine = BackupEngine.open(Env.getDefault(), backupOptions);
+        }
+        return backupEngine;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (backupEngine != null) {
+            backupEngine.close();
+            backupOptions.close();
+            backupEngine = null;
+        }
+    }
+
+    /**
+     * A backup kept by the BackupEngine.
+     */
+    @Value
+    public static class Backup {
+        int id;
+
+        /**
+         * Creation time, in epoch seconds.
+         */
+        long timestamp;
+
+        /**
+         * Size of the backup's files in bytes, including those shared with other backups.
+         */
+        long size;
+
+        int files;
+
+        static Backup of(BackupInfo info) {
+            return new Backup(info.backupId(), info.timestamp(), info.size(), info.numberFiles());
+        }
+    }
+}
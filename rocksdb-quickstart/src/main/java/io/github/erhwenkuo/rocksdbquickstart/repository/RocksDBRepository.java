@@ -1,64 +1,662 @@
 package io.github.erhwenkuo.rocksdbquickstart.repository;
 
+import io.github.erhwenkuo.rocksdbquickstart.config.MergeOperator;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBOptions;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.OptimisticTransactionDB;
 import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.Slice;
+import org.rocksdb.Statistics;
+import org.rocksdb.Status;
+import org.rocksdb.Transaction;
+import org.rocksdb.TtlDB;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteBatchWithIndex;
+import org.rocksdb.WriteOptions;
 import org.springframework.stereotype.Repository;
-import org.springframework.util.SerializationUtils;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * {@link KVRepository} on RocksDB. The repository itself reads and writes the default column
+ * family; {@link #namespace(String)} views each use a column family of their own, created on
+ * their first write with the options of {@code rocksdb.namespaces.<name>.*}.
+ *
+ * <p>The database is an {@link OptimisticTransactionDB}, for {@link #saveIfVersion}, unless
+ * {@code rocksdb.ttl-enabled} makes it a {@link TtlDB}. All other writes are plain writes.
+ * With {@code rocksdb.secondary.enabled} it is a read-only secondary instance of the database
+ * another process writes to instead, and writes throw {@link UnsupportedOperationException}.
+ *
+ * <p>Values are stored as encoded by the {@link CodecRegistry}, except in namespaces with a
+ * {@link MergeOperator}: those hold values in the operator's format, see {@link #merge}.
+ *
+ * <p>Unless {@code rocksdb.statistics.enabled} is off, the RocksDB statistics of the database
+ * are published as {@code rocksdb.*} metrics next to the {@code rocksdb.repository} timers.
+ *
+ * <p>Writes of a namespace with {@code rocksdb.indexes} read the value they replace and write
+ * the value and its {@link SecondaryIndexes index entries} in one WriteBatch, bypassing the
+ * write coalescer and direct buffers.
+ */
 @Slf4j
 @Repository
 public class RocksDBRepository implements KVRepository<String, Object>{
-    private final static String FILE_NAME = "spring-boot-db";
+    public static final String DEFAULT_NAMESPACE = "default";
+    private static final String TTL_MARKER = "TTLDB";
+    private static final Pattern NAMESPACE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every JRE has SHA-256", e);
+        }
+    });
+
+    private final RocksDBProperties properties;
+    private final CodecRegistry codecs;
+    private final MeterRegistry meterRegistry;
+    private final Timer saveTimer;
+    private final Timer findTimer;
+    private final Timer saveIfVersionTimer;
+    private final Counter versionConflicts;
+    private final Timer findAllTimer;
+    private final Timer deleteTimer;
+    private final Timer mergeTimer;
+    private final Timer writeTimer;
+    private final Timer scanTimer;
+    private final Timer bulkLoadTimer;
+    private final Counter bulkLoadBytes;
+    private final Timer findByIndexTimer;
     File baseDir;
+    RocksDBOptions options;
+    final List<ColumnFamilyHandle> columnFamilyHandles = new ArrayList<>();
     RocksDB db;
+    ReadOptions readOptions;
+    WriteOptions writeOptions;
+    DirectBuffers directBuffers;
+    WriteCoalescer coalescer;
+    ScheduledExecutorService catchUp;
+    ScheduledExecutorService walFlush;
+    SecondaryIndexes indexes;
+    Statistics statistics;
+    private StatisticsMetrics statisticsMetrics;
+    private long openNanos;
+    private volatile long lastCatchUpNanos;
+    // handles of the open column families by name, and of the dropped ones still to be closed
+    final Map<String, ColumnFamilyHandle> namespaces = new ConcurrentHashMap<>();
+    final List<ColumnFamilyHandle> droppedHandles = new ArrayList<>();
+    // options each column family was opened or created with, which bulk loads write SST files with
+    final Map<String, ColumnFamilyOptions> columnFamilyOptions = new ConcurrentHashMap<>();
 
+    public RocksDBRepository(RocksDBProperties properties, CodecRegistry codecs, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.codecs = codecs;
+        this.meterRegistry = meterRegistry;
+        this.saveTimer = timer(meterRegistry, "save");
+        this.findTimer = timer(meterRegistry, "find");
+        this.saveIfVersionTimer = timer(meterRegistry, "saveIfVersion");
+        this.versionConflicts = Counter.builder("rocksdb.repository.version.conflicts")
+                .description("Conditional writes rejected because the key was at another version or written concurrently")
+                .register(meterRegistry);
+        this.findAllTimer = timer(meterRegistry, "findAll");
+        this.deleteTimer = timer(meterRegistry, "delete");
+        this.mergeTimer = timer(meterRegistry, "merge");
+        this.writeTimer = timer(meterRegistry, "write");
+        this.scanTimer = timer(meterRegistry, "scan");
+        this.bulkLoadTimer = timer(meterRegistry, "bulkLoad");
+        this.bulkLoadBytes = Counter.builder("rocksdb.bulk.load.bytes")
+                .description("Keys and values ingested as SST files by bulk loads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.findByIndexTimer = timer(meterRegistry, "findByIndex");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("rocksdb.repository")
+                .description("Latency of KVRepository operations, RocksDB call and value codec included")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    private static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Opens the database, or fails: a repository that could not open its database throws
+     * instead of starting without one.
+     *
+     * @throws IllegalStateException if the database cannot be opened
+     */
     @PostConstruct // execute after the application starts
-    void initialize() {
+    public void initialize() {
         RocksDB.loadLibrary();
-        final Options options = new Options();
-        options.setCreateIfMissing(true);
-        baseDir = new File("/tmp/rocks", FILE_NAME);
+        baseDir = new File(properties.getDataDir());
 
+        final long start = System.nanoTime();
         try {
-            Files.createDirectories(baseDir.getParentFile().toPath());
             Files.createDirectories(baseDir.getAbsoluteFile().toPath());
-            db = RocksDB.open(options, baseDir.getAbsolutePath());
+            options = RocksDBOptions.create(properties.getOptions());
+            final RocksDBProperties.Write write = properties.getWrite();
+            options.getDbOptions()
+                    .setAvoidFlushDuringShutdown(!properties.getShutdown().isFlushMemtables())
+                    .setManualWalFlush(write.isManualWalFlush());
+            if (properties.getStatistics().isEnabled()) {
+                statistics = new Statistics();
+                statistics.setStatsLevel(properties.getStatistics().getLevel());
+                options.getDbOptions().setStatistics(statistics);
+            }
+            if (properties.getDirectBuffers().isEnabled()) {
+                directBuffers = new DirectBuffers(Math.toIntExact(properties.getDirectBuffers().getInitialValueSize().toBytes()),
+                        Math.toIntExact(properties.getDirectBuffers().getMaxPooledSize().toBytes()));
+            }
+            indexes = new SecondaryIndexes(properties.getIndexes());
+            for (String namespace : indexes.namespaces()) {
+                if (mergeOperator(namespace) != null)
+                    throw new IllegalStateException("Namespace " + namespace + " has a merge-operator, its values cannot be indexed");
+                // nothing writes to the index when a value expires, its entries would stay behind
+                if (ttl(namespace) != null)
+                    throw new IllegalStateException("Namespace " + namespace + " has a ttl, its values cannot be indexed");
+            }
+            final long walSize = walSize();
+            final List<ColumnFamilyDescriptor> descriptors = columnFamilyDescriptors();
+            for (ColumnFamilyDescriptor descriptor : descriptors) {
+                columnFamilyOptions.put(new String(descriptor.getName(), UTF_8), descriptor.getOptions());
+            }
+            if (properties.getSecondary().isEnabled()) {
+                db = openAsSecondary(descriptors);
+            } else if (checkTtlMode()) {
+                final List<Integer> ttls = new ArrayList<>();
+                for (ColumnFamilyDescriptor descriptor : descriptors) {
+                    ttls.add(ttlSeconds(new String(descriptor.getName(), UTF_8)));
+                }
+                db = TtlDB.open(options.getDbOptions(), baseDir.getAbsolutePath(), descriptors, columnFamilyHandles, ttls, false);
+            } else {
+                db = OptimisticTransactionDB.open(options.getDbOptions(), baseDir.getAbsolutePath(), descriptors, columnFamilyHandles);
+            }
+            openNanos = System.nanoTime() - start;
+            for (ColumnFamilyHandle handle : columnFamilyHandles) {
+                namespaces.put(new String(handle.getName(), UTF_8), handle);
+            }
+            if (!indexes.isEmpty() && !properties.getSecondary().isEnabled())
+                createColumnFamily(SecondaryIndexes.COLUMN_FAMILY);
+
+            readOptions = new ReadOptions();
+            writeOptions = new WriteOptions().setSync(write.isSync());
+            if (write.isCoalesce() && !properties.getSecondary().isEnabled()) {
+                coalescer = new WriteCoalescer(db, writeOptions, write.getMaxBatch(), write.getMaxDelay().toNanos(),
+                        DistributionSummary.builder("rocksdb.coalescer.group.size")
+                                .description("Number of saves, merges and deletes written together by the write coalescer")
+                                .register(meterRegistry));
+            }
+            if (write.isManualWalFlush() && !properties.getSecondary().isEnabled()) {
+                walFlush = Executors.newSingleThreadScheduledExecutor(daemonThreads("rocksdb-wal-flush"));
+                final long interval = write.getWalFlushInterval().toNanos();
+                walFlush.scheduleWithFixedDelay(this::flushWal, interval, interval, TimeUnit.NANOSECONDS);
+            }
+
+            if (statistics != null) {
+                statisticsMetrics = new StatisticsMetrics(statistics);
+                statisticsMetrics.bindTo(meterRegistry);
+            }
+            TimeGauge.builder("rocksdb.open.duration", this, TimeUnit.NANOSECONDS, r -> r.openNanos)
+                    .description("Time opening the database took at startup, WAL recovery included")
+                    .register(meterRegistry);
+            Gauge.builder("rocksdb.open.wal.size", () -> walSize)
+                    .description("Size of the WAL files recovered when the database was opened")
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            log.info("RocksDB opened in {} ms, with {} bytes of WAL to recover", TimeUnit.NANOSECONDS.toMillis(openNanos), walSize);
+        } catch (IOException | RocksDBException e) {
+            release();
+            throw new IllegalStateException("Could not open RocksDB at " + baseDir.getAbsolutePath() + ": " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+
+    // the WAL files the open is going to replay, an empty database has none
+    private long walSize() throws IOException {
+        final String walDir = options.getDbOptions().walDir();
+        final Path dir = walDir == null || walDir.isEmpty() ? baseDir.toPath() : Paths.get(walDir);
+        if (!Files.isDirectory(dir))
+            return 0;
+        long size = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.log")) {
+            for (Path file : files) {
+                size += Files.size(file);
+            }
+        }
+        return size;
+    }
+
+    private void flushWal() {
+        try {
+            db.flushWal(properties.getWrite().isSync());
+        } catch (RocksDBException | RuntimeException e) {
+            // the next flush writes it out with whatever came since
+            log.warn("Error flushing the WAL, cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            final Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Opens the primary's database as a secondary instance and schedules its catch-ups.
+     */
+    private RocksDB openAsSecondary(List<ColumnFamilyDescriptor> descriptors) throws IOException, RocksDBException {
+        if (properties.isTtlEnabled() || new File(baseDir, TTL_MARKER).exists())
+            throw new IllegalStateException("A TtlDB cannot be opened as a secondary instance");
+        final RocksDBProperties.Secondary settings = properties.getSecondary();
+        final Path path = settings.getPath() != null
+                ? Files.createDirectories(Paths.get(settings.getPath()))
+                : Files.createTempDirectory("rocksdb-secondary");
+
+        // a secondary cannot reopen files the primary deleted since, it has to keep them all open
+        options.getDbOptions().setMaxOpenFiles(-1);
+        final RocksDB secondary = RocksDB.openAsSecondary(options.getDbOptions(), baseDir.getAbsolutePath(),
+                path.toString(), descriptors, columnFamilyHandles);
+        lastCatchUpNanos = System.nanoTime();
+
+        final Timer catchUpTimer = Timer.builder("rocksdb.secondary.catch.up")
+                .description("Duration of the catch-ups with the primary")
+                .register(meterRegistry);
+        Gauge.builder("rocksdb.secondary.catch.up.interval", settings, s -> s.getCatchUpInterval().toMillis() / 1000.0)
+                .description("Configured time between two catch-ups with the primary")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("rocksdb.secondary.staleness", this, r -> (System.nanoTime() - r.lastCatchUpNanos) / 1e9)
+                .description("Time since the start of the last successful catch-up, how far reads may lag behind the primary")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        catchUp = Executors.newSingleThreadScheduledExecutor(daemonThreads("rocksdb-secondary-catch-up"));
+        final long interval = settings.getCatchUpInterval().toNanos();
+        catchUp.scheduleWithFixedDelay(() -> catchUpWithPrimary(secondary, catchUpTimer), interval, interval, TimeUnit.NANOSECONDS);
+        log.info("Opened {} as a secondary instance in {}, catching up every {}", baseDir, path, settings.getCatchUpInterval());
+        return secondary;
+    }
+
+    private void catchUpWithPrimary(RocksDB secondary, Timer catchUpTimer) {
+        final long start = System.nanoTime();
+        try {
+            secondary.tryCatchUpWithPrimary();
+            lastCatchUpNanos = start;
+        } catch (RocksDBException | RuntimeException e) {
+            // keep the schedule going, the next catch-up may succeed
+            log.warn("Error catching up with the primary, cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+        } finally {
+            catchUpTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void checkWritable() {
+        if (properties.getSecondary().isEnabled())
+            throw new UnsupportedOperationException("This is a read-only secondary instance, writes go to the primary");
+    }
+
+    /**
+     * A TtlDB stores a timestamp after every value, which a plain RocksDB would return as part
+     * of the value and a TtlDB would cut off values written without one. A marker file records
+     * which kind the database was created as, and opening it as the other kind fails.
+     *
+     * @return whether to open the database as a TtlDB
+     */
+    private boolean checkTtlMode() throws IOException {
+        final File marker = new File(baseDir, TTL_MARKER);
+        final boolean exists = new File(baseDir, "CURRENT").exists();
+        if (exists && marker.exists() != properties.isTtlEnabled()) {
+            throw new IllegalStateException("RocksDB at " + baseDir + (marker.exists() ? " was" : " was not")
+                    + " created with rocksdb.ttl-enabled, it cannot be changed for an existing database");
+        }
+        if (!exists && properties.isTtlEnabled()) {
+            Files.createFile(marker.toPath());
+        }
+        if (!properties.isTtlEnabled() && hasTtl()) {
+            log.warn("Expired entries are hidden but never dropped unless rocksdb.ttl-enabled is set");
+        }
+        return properties.isTtlEnabled();
+    }
+
+    private boolean hasTtl() {
+        return properties.getOptions().getTtl() != null
+                || properties.getNamespaces().values().stream().anyMatch(settings -> settings.getTtl() != null);
+    }
+
+    /**
+     * @return the configured time to live of a namespace, null for none
+     */
+    private Duration ttl(String namespace) {
+        final RocksDBProperties.Tuning settings = properties.getNamespaces().get(namespace);
+        return settings != null && settings.getTtl() != null ? settings.getTtl() : properties.getOptions().getTtl();
+    }
+
+    // TtlDB takes whole seconds, 0 for entries that do not expire; index entries are removed by the writes only
+    private int ttlSeconds(String namespace) {
+        if (SecondaryIndexes.COLUMN_FAMILY.equals(namespace))
+            return 0;
+        final Duration ttl = ttl(namespace);
+        return ttl != null ? (int) Math.max(1, Math.min(ttl.getSeconds(), Integer.MAX_VALUE)) : 0;
+    }
+
+    /**
+     * @return the merge operator of a namespace, null for none
+     */
+    private MergeOperator mergeOperator(String namespace) {
+        final RocksDBProperties.Tuning settings = DEFAULT_NAMESPACE.equals(namespace)
+                ? properties.getOptions()
+                : properties.getNamespaces().get(namespace);
+        return settings != null ? settings.getMergeOperator() : null;
+    }
+
+    /**
+     * @return the value encoded for the namespace: in the format of its merge operator if it
+     * has one, otherwise with an expiry time if it or the namespace has a time to live,
+     * whichever ends first
+     */
+    private byte[] encode(String namespace, Object value, Duration ttl) {
+        final MergeOperator mergeOperator = mergeOperator(namespace);
+        if (mergeOperator != null) {
+            // an expiry envelope would not survive a merge, only a TtlDB expires these
+            if (ttl != null)
+                throw new IllegalArgumentException("Keys of namespace " + namespace + " are merged and cannot have a ttl of their own");
+            return operand(mergeOperator, value);
+        }
+        if (ttl != null && indexed(namespace))
+            throw new IllegalArgumentException("Keys of namespace " + namespace + " are indexed and cannot have a ttl of their own");
+        final Duration namespaceTtl = ttl(namespace);
+        if (ttl == null && namespaceTtl == null)
+            return codecs.encode(value);
+        final Duration expiry = ttl == null ? namespaceTtl
+                : namespaceTtl == null ? ttl
+                : ttl.compareTo(namespaceTtl) <= 0 ? ttl : namespaceTtl;
+        return codecs.encode(value, System.currentTimeMillis() + expiry.toMillis());
+    }
 
-            log.info("RocksDB initialized");
-        } catch(IOException | RocksDBException e) {
-            log.error("Error initializng RocksDB. Exception: '{}', message: '{}'", e.getCause(), e.getMessage(), e);
+    /**
+     * @return a value or merge operand in the format of a merge operator: a 64-bit little
+     * endian integer for {@link MergeOperator#UINT64_ADD} (from an integral number or its
+     * JSON text), the JSON document itself for {@link MergeOperator#STRING_APPEND}
+     */
+    private static byte[] operand(MergeOperator mergeOperator, Object value) {
+        switch (mergeOperator) {
+            case UINT64_ADD:
+                final long number;
+                if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)
+                    number = ((Number) value).longValue();
+                else if (value instanceof byte[])
+                    number = Long.parseLong(new String((byte[]) value, UTF_8).trim());
+                else
+                    throw new IllegalArgumentException("A uint64add value must be an integer, got " + value.getClass().getName());
+                return ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(number).array();
+            case STRING_APPEND:
+                if (!(value instanceof byte[]) || ((byte[]) value).length == 0)
+                    throw new IllegalArgumentException("A stringappend value must be a JSON document");
+                return (byte[]) value;
+            default:
+                throw new IllegalStateException("Unknown merge operator " + mergeOperator);
         }
     }
 
+    /**
+     * @return the value stored in a namespace with {@code mergeOperator} (null for none), null
+     * if it expired
+     */
+    private Object decode(MergeOperator mergeOperator, byte[] bytes) {
+        if (mergeOperator == null)
+            return codecs.decode(bytes);
+        if (mergeOperator == MergeOperator.UINT64_ADD) {
+            if (bytes.length != Long.BYTES)
+                throw new IllegalArgumentException("Not a uint64add value, " + bytes.length + " bytes long");
+            return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        }
+        // the comma separated documents, as a JSON array
+        final byte[] array = new byte[bytes.length + 2];
+        array[0] = '[';
+        System.arraycopy(bytes, 0, array, 1, bytes.length);
+        array[array.length - 1] = ']';
+        return array;
+    }
+
+    // the configured column families plus the namespaces created by earlier runs
+    private List<ColumnFamilyDescriptor> columnFamilyDescriptors() throws RocksDBException {
+        final List<ColumnFamilyDescriptor> descriptors = new ArrayList<>(options.getColumnFamilyDescriptors());
+        if (!new File(baseDir, "CURRENT").exists()) {
+            return descriptors;
+        }
+
+        try (final Options listOptions = new Options()) {
+            for (byte[] name : RocksDB.listColumnFamilies(listOptions, baseDir.getAbsolutePath())) {
+                if (descriptors.stream().noneMatch(descriptor -> Arrays.equals(descriptor.getName(), name))) {
+                    final String namespace = new String(name, UTF_8);
+                    descriptors.add(new ColumnFamilyDescriptor(name,
+                            options.newColumnFamilyOptions(properties.getNamespaces().get(namespace))));
+                }
+            }
+        }
+        return descriptors;
+    }
+
+    /**
+     * Stops the write coalescer, if any, after it wrote the writes already queued, and the
+     * background threads. Then writes out and syncs the WAL, flushes the memtables unless
+     * {@code rocksdb.shutdown.flush-memtables} is off, and closes the database and all it
+     * was opened with. The repository cannot be used afterwards.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (coalescer != null)
+            coalescer.close();
+        stop(catchUp);
+        stop(walFlush);
+        if (db == null)
+            return;
+
+        final long start = System.nanoTime();
+        if (!properties.getSecondary().isEnabled()) {
+            try {
+                // also writes out the buffer of a manual WAL flush
+                db.flushWal(true);
+                if (properties.getShutdown().isFlushMemtables()) {
+                    try (final FlushOptions flushOptions = new FlushOptions().setWaitForFlush(true)) {
+                        db.flush(flushOptions, new ArrayList<>(namespaces.values()));
+                    }
+                }
+            } catch (RocksDBException e) {
+                log.error("Error writing out RocksDB before closing it, the next open recovers from the WAL. Cause: '{}', message: '{}'",
+                        e.getCause(), e.getMessage());
+            }
+        }
+        release();
+        log.info("RocksDB closed in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private static void stop(ScheduledExecutorService executor) throws InterruptedException {
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // closes whatever was opened, column family handles before the database and options last
+    private void release() {
+        final List<ColumnFamilyHandle> handles = new ArrayList<>(columnFamilyHandles);
+        handles.addAll(namespaces.values());
+        handles.addAll(droppedHandles);
+        for (ColumnFamilyHandle handle : handles) {
+            handle.close();
+        }
+        namespaces.clear();
+        columnFamilyHandles.clear();
+        droppedHandles.clear();
+        columnFamilyOptions.clear();
+        if (db != null) {
+            try {
+                db.closeE();
+            } catch (RocksDBException e) {
+                log.error("Error closing RocksDB, cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+            }
+            db = null;
+        }
+        if (statisticsMetrics != null)
+            statisticsMetrics.close();
+        if (statistics != null)
+            statistics.close();
+        if (readOptions != null)
+            readOptions.close();
+        if (writeOptions != null)
+            writeOptions.close();
+        if (options != null)
+            options.close();
+        statisticsMetrics = null;
+        statistics = null;
+        readOptions = null;
+        writeOptions = null;
+        options = null;
+    }
+
     @Override
     public boolean save(String key, Object value) {
-        log.info("saving value '{}' with key '{}'", value, key);
+        return save(DEFAULT_NAMESPACE, key, value, null);
+    }
 
+    @Override
+    public boolean save(String key, Object value, Duration ttl) {
+        return save(DEFAULT_NAMESPACE, key, value, ttl);
+    }
+
+    private boolean save(String namespace, String key, Object value, Duration ttl) {
+        checkWritable();
+        final long start = System.nanoTime();
         try {
-            db.put(key.getBytes(), SerializationUtils.serialize(value));
+            final ColumnFamilyHandle columnFamily = createColumnFamily(namespace);
+            final boolean plain = ttl == null && ttl(namespace) == null && mergeOperator(namespace) == null;
+            if (indexed(namespace))
+                writeIndexed(namespace, columnFamily, key, encode(namespace, value, ttl));
+            else if (coalescer != null)
+                coalescer.put(columnFamily, key.getBytes(UTF_8), encode(namespace, value, ttl));
+            else if (directBuffers != null && plain)
+                putDirect(columnFamily, key, value);
+            else
+                db.put(columnFamily, writeOptions, key.getBytes(UTF_8), encode(namespace, value, ttl));
         } catch (RocksDBException e) {
             log.error("Error saving entry. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+
+            return false;
+        } finally {
+            record(saveTimer, start);
         }
 
-        return false;
+        return true;
+    }
+
+    private boolean indexed(String namespace) {
+        return !indexes.of(namespace).isEmpty();
+    }
+
+    private ColumnFamilyHandle indexColumnFamily() {
+        return namespaces.get(SecondaryIndexes.COLUMN_FAMILY);
+    }
+
+    /**
+     * Writes a value of an indexed namespace, or deletes it if {@code stored} is null, in one
+     * WriteBatch with the index entries of the value it replaces and of the new one.
+     */
+    private void writeIndexed(String namespace, ColumnFamilyHandle columnFamily, String key, byte[] stored) throws RocksDBException {
+        final byte[] rawKey = key.getBytes(UTF_8);
+        final ReentrantLock lock = indexes.lock(key);
+        lock.lock();
+        try (final WriteBatch batch = new WriteBatch()) {
+            final byte[] previous = db.get(columnFamily, rawKey);
+            if (stored != null)
+                batch.put(columnFamily, rawKey, stored);
+            else
+                batch.delete(columnFamily, rawKey);
+            indexes.update(batch, indexColumnFamily(), namespace, rawKey, previous, stored);
+            db.write(writeOptions, batch);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public Optional<Object> find(String key) {
+        return find(DEFAULT_NAMESPACE, key);
+    }
+
+    private Optional<Object> find(String namespace, String key) {
         Object value = null;
 
+        final long start = System.nanoTime();
         try {
-            byte[] bytes = db.get(key.getBytes());
-            if (bytes != null)
-                value = SerializationUtils.deserialize(bytes);
+            final ColumnFamilyHandle columnFamily = columnFamily(namespace);
+            final MergeOperator mergeOperator = mergeOperator(namespace);
+            if (columnFamily != null && directBuffers != null && mergeOperator == null) {
+                final ByteBuffer bytes = getDirect(columnFamily, key);
+                if (bytes != null)
+                    value = codecs.decode(bytes);
+            } else if (columnFamily != null) {
+                byte[] bytes = db.get(columnFamily, key.getBytes(UTF_8));
+                if (bytes != null)
+                    value = decode(mergeOperator, bytes);
+            }
         } catch (RocksDBException e) {
             log.error(
                     "Error retrieving the entry with key: {}, cause: {}, message: {}",
@@ -66,25 +664,709 @@ public class RocksDBRepository implements KVRepository<String, Object>{
                     e.getCause(),
                     e.getMessage()
             );
+        } finally {
+            record(findTimer, start);
         }
 
-        log.info("finding key '{}' returns '{}'", key, value);
-
         return value != null ? Optional.of(value) : Optional.empty();
     }
 
+    @Override
+    public Optional<Versioned<Object>> findVersioned(String key) {
+        return findVersioned(DEFAULT_NAMESPACE, key);
+    }
+
+    private Optional<Versioned<Object>> findVersioned(String namespace, String key) {
+        Versioned<Object> versioned = null;
+
+        final long start = System.nanoTime();
+        try {
+            final ColumnFamilyHandle columnFamily = columnFamily(namespace);
+            final MergeOperator mergeOperator = mergeOperator(namespace);
+            if (columnFamily != null && directBuffers != null && mergeOperator == null) {
+                final ByteBuffer bytes = getDirect(columnFamily, key);
+                if (bytes != null) {
+                    final long version = version(bytes);
+                    final long expiresAtMillis = CodecRegistry.expiresAtMillis(bytes);
+                    final Object value = codecs.decode(bytes);
+                    versioned = value != null ? new Versioned<>(value, version, expiresAtMillis) : null;
+                }
+            } else if (columnFamily != null) {
+                final byte[] bytes = db.get(columnFamily, key.getBytes(UTF_8));
+                final Object value = bytes != null ? decode(mergeOperator, bytes) : null;
+                // merged values have no expiry envelope, their first byte is data
+                final long expiresAtMillis = mergeOperator == null && bytes != null
+                        ? CodecRegistry.expiresAtMillis(bytes)
+                        : Versioned.NEVER;
+                versioned = value != null ? new Versioned<>(value, version(bytes), expiresAtMillis) : null;
+            }
+        } catch (RocksDBException e) {
+            log.error("Error retrieving the entry with key: {}, cause: {}, message: {}", key, e.getCause(), e.getMessage());
+        } finally {
+            record(findTimer, start);
+        }
+
+        return Optional.ofNullable(versioned);
+    }
+
+    @Override
+    public OptionalLong saveIfVersion(String key, long expectedVersion, Object value) {
+        return saveIfVersion(DEFAULT_NAMESPACE, key, expectedVersion, value);
+    }
+
+    private OptionalLong saveIfVersion(String namespace, String key, long expectedVersion, Object value) {
+        checkWritable();
+        if (!(db instanceof OptimisticTransactionDB))
+            throw new UnsupportedOperationException("Conditional writes need transactions, which a TtlDB (rocksdb.ttl-enabled) has not");
+        final byte[] rawKey = key.getBytes(UTF_8);
+        final byte[] rawValue = encode(namespace, value, null);
+        // the index entries of the value read are replaced along, no other write of the key may come in between
+        final ReentrantLock lock = indexed(namespace) ? indexes.lock(key) : null;
+
+        final long start = System.nanoTime();
+        if (lock != null)
+            lock.lock();
+        try (final Transaction transaction = ((OptimisticTransactionDB) db).beginTransaction(writeOptions)) {
+            final ColumnFamilyHandle columnFamily = createColumnFamily(namespace);
+            // the read tracks the key: any write to it from now on makes the commit fail
+            final byte[] current = transaction.getForUpdate(readOptions, columnFamily, rawKey, true);
+            final boolean exists = current != null && decode(mergeOperator(namespace), current) != null;
+            if ((exists ? version(current) : Versioned.ABSENT) != expectedVersion) {
+                versionConflicts.increment();
+                throw new VersionConflictException(key);
+            }
+            transaction.put(columnFamily, rawKey, rawValue);
+            if (lock != null) {
+                try (final WriteBatchWithIndex batch = transaction.getWriteBatch()) {
+                    indexes.update(batch, indexColumnFamily(), namespace, rawKey, current, rawValue);
+                }
+            }
+            transaction.commit();
+        } catch (RocksDBException e) {
+            final Status.Code code = e.getStatus() != null ? e.getStatus().getCode() : null;
+            if (code == Status.Code.Busy || code == Status.Code.TryAgain) {
+                versionConflicts.increment();
+                throw new VersionConflictException(key);
+            }
+            log.error("Error saving entry conditionally. Cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+
+            return OptionalLong.empty();
+        } finally {
+            if (lock != null)
+                lock.unlock();
+            record(saveIfVersionTimer, start);
+        }
+
+        return OptionalLong.of(version(rawValue));
+    }
+
+    // The first 64 bits of the SHA-256 of the stored bytes, so the same bytes are the same version (see Versioned)
+    private static long version(byte[] bytes) {
+        return firstLong(SHA_256.get().digest(bytes));
+    }
+
+    private static long version(ByteBuffer bytes) {
+        final MessageDigest digest = SHA_256.get();
+        digest.update(bytes.duplicate());
+        return firstLong(digest.digest());
+    }
+
+    // ABSENT is taken by keys that do not exist
+    private static long firstLong(byte[] sha256) {
+        final long version = ByteBuffer.wrap(sha256).getLong();
+        return version != Versioned.ABSENT ? version : 1;
+    }
+
+    // A value larger than the buffer is not copied, but its size is returned: read it again with a large enough one.
+    // Returns the buffer holding the value, null if there is none.
+    private ByteBuffer getDirect(ColumnFamilyHandle columnFamily, String key) throws RocksDBException {
+        final ByteBuffer rawKey = directBuffers.key(key);
+        ByteBuffer rawValue = directBuffers.value(0);
+        int size = db.get(columnFamily, readOptions, rawKey, rawValue);
+        while (size > rawValue.capacity()) {
+            rawValue = directBuffers.value(size);
+            ((Buffer) rawKey).rewind();
+            size = db.get(columnFamily, readOptions, rawKey, rawValue);
+        }
+        return size != RocksDB.NOT_FOUND ? rawValue : null;
+    }
+
+    private void putDirect(ColumnFamilyHandle columnFamily, String key, Object value) throws RocksDBException {
+        final ByteBuffer rawKey = directBuffers.key(key);
+        ByteBuffer rawValue = directBuffers.value(0);
+        final int size = codecs.encode(value, rawValue);
+        if (size > rawValue.capacity()) {
+            rawValue = directBuffers.value(size);
+            codecs.encode(value, rawValue);
+        }
+        ((Buffer) rawValue).flip();
+        db.put(columnFamily, writeOptions, rawKey, rawValue);
+    }
+
+    @Override
+    public Map<String, Object> findAll(Collection<String> keys) {
+        return findAll(DEFAULT_NAMESPACE, keys);
+    }
+
+    private Map<String, Object> findAll(String namespace, Collection<String> keys) {
+        final List<byte[]> rawKeys = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            rawKeys.add(key.getBytes(UTF_8));
+        }
+
+        final Map<String, Object> values = new LinkedHashMap<>();
+        final long start = System.nanoTime();
+        try {
+            final ColumnFamilyHandle columnFamily = columnFamily(namespace);
+            if (columnFamily == null)
+                return values;
+            final MergeOperator mergeOperator = mergeOperator(namespace);
+            final List<byte[]> rawValues = db.multiGetAsList(Collections.nCopies(rawKeys.size(), columnFamily), rawKeys);
+            final Iterator<String> key = keys.iterator();
+            for (byte[] bytes : rawValues) {
+                String k = key.next();
+                Object value = bytes != null ? decode(mergeOperator, bytes) : null;
+                if (value != null)
+                    values.put(k, value);
+            }
+        } catch (RocksDBException e) {
+            log.error("Error retrieving {} entries, cause: {}, message: {}", keys.size(), e.getCause(), e.getMessage());
+        } finally {
+            record(findAllTimer, start);
+        }
+
+        return values;
+    }
+
     @Override
     public boolean delete(String key) {
-        log.info("deleting key '{}'", key);
+        return delete(DEFAULT_NAMESPACE, key);
+    }
 
+    private boolean delete(String namespace, String key) {
+        checkWritable();
+        final long start = System.nanoTime();
         try {
-            db.delete(key.getBytes());
+            final ColumnFamilyHandle columnFamily = columnFamily(namespace);
+            if (columnFamily == null)
+                return true;
+            if (indexed(namespace))
+                writeIndexed(namespace, columnFamily, key, null);
+            else if (coalescer != null)
+                coalescer.delete(columnFamily, key.getBytes(UTF_8));
+            else if (directBuffers != null)
+                db.delete(columnFamily, writeOptions, directBuffers.key(key));
+            else
+                db.delete(columnFamily, writeOptions, key.getBytes(UTF_8));
         } catch (RocksDBException e) {
             log.error("Error deleting entry, cause: '{}', message: '{}'", e.getCause(), e.getMessage());
 
             return false;
+        } finally {
+            record(deleteTimer, start);
         }
 
         return true;
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean merge(String key, Object operand) {
+        return merge(DEFAULT_NAMESPACE, key, operand);
+    }
+
+    private boolean merge(String namespace, String key, Object operand) {
+        checkWritable();
+        final MergeOperator mergeOperator = mergeOperator(namespace);
+        if (mergeOperator == null)
+            throw new IllegalArgumentException("Namespace " + namespace + " has no merge-operator configured");
+        final byte[] rawOperand = operand(mergeOperator, operand);
+
+        final long start = System.nanoTime();
+        try {
+            final ColumnFamilyHandle columnFamily = createColumnFamily(namespace);
+            if (coalescer != null)
+                coalescer.merge(columnFamily, key.getBytes(UTF_8), rawOperand);
+            else
+                db.merge(columnFamily, writeOptions, key.getBytes(UTF_8), rawOperand);
+        } catch (RocksDBException e) {
+            log.error("Error merging entry, cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+
+            return false;
+        } finally {
+            record(mergeTimer, start);
+        }
+
+        return true;
+    }
+
+    @Override
+    public BatchResult write(Iterator<KVOperation<String, Object>> operations, BatchMode mode) {
+        return write(DEFAULT_NAMESPACE, operations, mode);
+    }
+
+    private BatchResult write(String namespace, Iterator<KVOperation<String, Object>> operations, BatchMode mode) {
+        checkWritable();
+        final int maxSize = properties.getBatch().getMaxSize();
+        final List<KVOperation<String, Object>> chunk = new ArrayList<>();
+        long written = 0;
+        int batches = 0;
+
+        final long start = System.nanoTime();
+        try (final WriteBatch batch = new WriteBatch()) {
+            final ColumnFamilyHandle columnFamily = createColumnFamily(namespace);
+            while (true) {
+                // the operations come off the request body: a chunk is read in full before any lock is taken
+                chunk.clear();
+                try {
+                    while (chunk.size() < maxSize && operations.hasNext()) {
+                        chunk.add(operations.next());
+                    }
+                    if (mode == BatchMode.ATOMIC && operations.hasNext()) {
+                        throw new BatchTooLargeException(maxSize);
+                    }
+                } catch (UncheckedIOException e) {
+                    // the chunks written before stay applied, the result tells how many operations they held
+                    log.warn("Error reading batch after {} operations, message: '{}'", written, e.getMessage());
+
+                    return new BatchResult(written, batches, false);
+                }
+                if (chunk.isEmpty())
+                    break;
+                write(namespace, columnFamily, chunk, batch);
+                batch.clear();
+                written += chunk.size();
+                batches++;
+            }
+        } catch (RocksDBException e) {
+            log.error("Error writing batch after {} operations, cause: '{}', message: '{}'", written, e.getCause(), e.getMessage());
+
+            return new BatchResult(written, batches, false);
+        } finally {
+            record(writeTimer, start);
+        }
+
+        return new BatchResult(written, batches, true);
+    }
+
+    // Writes one chunk of a batch as one WriteBatch. The chunk may write any key of an indexed namespace, so it
+    // holds all the index locks while it reads the values it replaces and writes.
+    private void write(String namespace, ColumnFamilyHandle columnFamily, List<KVOperation<String, Object>> chunk,
+                       WriteBatch batch) throws RocksDBException {
+        final boolean plain = ttl(namespace) == null && mergeOperator(namespace) == null;
+        final boolean indexed = indexed(namespace);
+        // of an indexed namespace, the values written by the chunk not yet written to the database
+        final Map<String, byte[]> unwritten = indexed ? new HashMap<>() : null;
+
+        if (indexed)
+            indexes.lockAll();
+        try {
+            for (KVOperation<String, Object> operation : chunk) {
+                final byte[] rawKey = operation.getKey().getBytes(UTF_8);
+                final byte[] stored;
+                if (operation.getType() == KVOperation.Type.PUT) {
+                    stored = plain ? codecs.encode(operation.getValue()) : encode(namespace, operation.getValue(), null);
+                    batch.put(columnFamily, rawKey, stored);
+                } else {
+                    stored = null;
+                    batch.delete(columnFamily, rawKey);
+                }
+                if (indexed) {
+                    final byte[] previous = unwritten.containsKey(operation.getKey())
+                            ? unwritten.get(operation.getKey())
+                            : db.get(columnFamily, rawKey);
+                    indexes.update(batch, indexColumnFamily(), namespace, rawKey, previous, stored);
+                    unwritten.put(operation.getKey(), stored);
+                }
+            }
+            db.write(writeOptions, batch);
+        } finally {
+            if (indexed)
+                indexes.unlockAll();
+        }
+    }
+
+    @Override
+    public BulkLoadResult bulkLoad(Iterator<KVOperation<String, Object>> records) {
+        return bulkLoad(DEFAULT_NAMESPACE, records);
+    }
+
+    private BulkLoadResult bulkLoad(String namespace, Iterator<KVOperation<String, Object>> records) {
+        checkWritable();
+        if (db instanceof TtlDB)
+            throw new UnsupportedOperationException("A TtlDB cannot ingest SST files, its values carry a timestamp");
+        if (indexed(namespace))
+            throw new UnsupportedOperationException("Namespace " + namespace + " has indexes, which ingested SST files would bypass");
+        final RocksDBProperties.BulkLoad settings = properties.getBulkLoad();
+        final Path dir = settings.getDir() != null
+                ? Paths.get(settings.getDir())
+                : baseDir.getAbsoluteFile().toPath().resolveSibling(baseDir.getName() + "-bulk-load");
+
+        final long start = System.nanoTime();
+        final ColumnFamilyHandle columnFamily;
+        try {
+            columnFamily = createColumnFamily(namespace);
+        } catch (RocksDBException e) {
+            log.error("Error creating namespace {} to bulk load, cause: '{}', message: '{}'", namespace, e.getCause(), e.getMessage());
+            return new BulkLoadResult(0, 0, 0, 0, 0, false);
+        }
+        // SST files in the column family's format: comparator, compression, filters and block size
+        try (final Options sstOptions = new Options(options.getDbOptions(), columnFamilyOptions.get(namespace))) {
+            final BulkLoadResult result = new BulkLoader(db, columnFamily, sstOptions,
+                    (int) Math.min(settings.getRunSize().toBytes(), Integer.MAX_VALUE), settings.getThreads(), dir)
+                    .load(records, value -> encode(namespace, value, null));
+            bulkLoadBytes.increment(result.getBytes());
+            return result;
+        } finally {
+            record(bulkLoadTimer, start);
+        }
+    }
+
+    @Override
+    public Optional<String> scan(ScanRequest<String> request, BiConsumer<String, Object> visitor) {
+        return scan(DEFAULT_NAMESPACE, request, visitor);
+    }
+
+    private Optional<String> scan(String namespace, ScanRequest<String> request, BiConsumer<String, Object> visitor) {
+        final ColumnFamilyHandle columnFamily = columnFamily(namespace);
+        if (columnFamily == null)
+            return Optional.empty();
+        final MergeOperator mergeOperator = mergeOperator(namespace);
+
+        byte[] lower = request.getFrom() != null ? request.getFrom().getBytes(UTF_8) : null;
+        byte[] upper = request.getTo() != null ? request.getTo().getBytes(UTF_8) : null;
+        if (request.getPrefix() != null) {
+            byte[] prefix = request.getPrefix().getBytes(UTF_8);
+            lower = max(lower, prefix);
+            upper = min(upper, prefixEnd(prefix));
+        }
+
+        // the bounds are checked inside RocksDB, the iterator simply becomes invalid past them
+        final long start = System.nanoTime();
+        try (final Slice lowerBound = lower != null ? new Slice(lower) : null;
+             final Slice upperBound = upper != null ? new Slice(upper) : null;
+             final ReadOptions readOptions = new ReadOptions()) {
+            if (lowerBound != null)
+                readOptions.setIterateLowerBound(lowerBound);
+            if (upperBound != null)
+                readOptions.setIterateUpperBound(upperBound);
+            // with a prefix extractor configured this lets RocksDB use the prefix bloom filters
+            readOptions.setPrefixSameAsStart(request.getPrefix() != null);
+
+            try (final RocksIterator iterator = db.newIterator(columnFamily, readOptions)) {
+                seek(iterator, request);
+
+                int visited = 0;
+                String lastKey = null;
+                while (iterator.isValid()) {
+                    if (request.getLimit() > 0 && visited == request.getLimit()) {
+                        return Optional.of(lastKey);
+                    }
+                    lastKey = new String(iterator.key(), UTF_8);
+                    final Object value = decode(mergeOperator, iterator.value());
+                    // expired entries are skipped until compaction drops them
+                    if (value != null) {
+                        visitor.accept(lastKey, value);
+                        visited++;
+                    }
+                    if (request.isReverse())
+                        iterator.prev();
+                    else
+                        iterator.next();
+                }
+                iterator.status();
+            }
+        } catch (RocksDBException e) {
+            log.error("Error scanning entries, cause: '{}', message: '{}'", e.getCause(), e.getMessage());
+        } finally {
+            record(scanTimer, start);
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public void findByIndex(String index, String value, boolean prefix, int limit, BiConsumer<String, Object> visitor) {
+        findByIndex(DEFAULT_NAMESPACE, index, value, prefix, limit, visitor);
+    }
+
+    private void findByIndex(String namespace, String name, String value, boolean prefix, int limit,
+                             BiConsumer<String, Object> visitor) {
+        final SecondaryIndexes.Index index = indexes.get(name, namespace);
+        final ColumnFamilyHandle columnFamily = columnFamily(namespace);
+        final ColumnFamilyHandle indexColumnFamily = indexColumnFamily();
+        if (columnFamily == null || indexColumnFamily == null)
+            return;
+        final byte[] lower = SecondaryIndexes.prefix(index.name, value, prefix);
+        final int from = index.name.getBytes(UTF_8).length + 1;
+        final int chunkSize = properties.getMultiGet().getChunkSize();
+
+        // without an upper bound (a prefix of 0xFF bytes has no end) the loop stops at the first other prefix
+        final byte[] upper = prefixEnd(lower);
+        final long start = System.nanoTime();
+        try (final Slice upperBound = upper != null ? new Slice(upper) : null;
+             final ReadOptions readOptions = new ReadOptions()) {
+            if (upperBound != null)
+                readOptions.setIterateUpperBound(upperBound);
+            try (final RocksIterator iterator = db.newIterator(indexColumnFamily, readOptions)) {
+                final List<byte[]> keys = new ArrayList<>(chunkSize);
+                int visited = 0;
+                iterator.seek(lower);
+                while (valid(iterator, lower, upperBound != null) && (limit == 0 || visited < limit)) {
+                    keys.add(SecondaryIndexes.key(iterator.key(), from));
+                    iterator.next();
+                    if (keys.size() < chunkSize && valid(iterator, lower, upperBound != null))
+                        continue;
+                    // indexed values do not expire, but one deleted since its entry was read points to nothing
+                    final List<byte[]> values = db.multiGetAsList(Collections.nCopies(keys.size(), columnFamily), keys);
+                    for (int i = 0; i < keys.size() && (limit == 0 || visited < limit); i++) {
+                        final Object decoded = values.get(i) != null ? codecs.decode(values.get(i)) : null;
+                        if (decoded != null) {
+                            visitor.accept(new String(keys.get(i), UTF_8), decoded);
+                            visited++;
+                        }
+                    }
+                    keys.clear();
+                }
+                iterator.status();
+            }
+        } catch (RocksDBException e) {
+            log.error("Error looking up index {}, cause: '{}', message: '{}'", name, e.getCause(), e.getMessage());
+        } finally {
+            record(findByIndexTimer, start);
+        }
+    }
+
+    // an iterator with an upper bound becomes invalid past it, one without is checked against the prefix
+    private static boolean valid(RocksIterator iterator, byte[] prefix, boolean bounded) {
+        return iterator.isValid() && (bounded || startsWith(iterator.key(), prefix));
+    }
+
+    @Override
+    public KVRepository<String, Object> namespace(String namespace) {
+        if (DEFAULT_NAMESPACE.equals(namespace))
+            return this;
+        checkNamespace(namespace);
+        return new NamespaceRepository(namespace);
+    }
+
+    @Override
+    public boolean dropNamespace(String namespace) {
+        checkNamespace(namespace);
+        if (DEFAULT_NAMESPACE.equals(namespace))
+            throw new IllegalArgumentException("The default namespace cannot be dropped");
+        checkWritable();
+
+        synchronized (namespaces) {
+            final ColumnFamilyHandle handle = namespaces.remove(namespace);
+            if (handle == null)
+                return false;
+            try {
+                db.dropColumnFamily(handle);
+            } catch (RocksDBException e) {
+                log.error("Error dropping namespace {}, cause: '{}', message: '{}'", namespace, e.getCause(), e.getMessage());
+                namespaces.put(namespace, handle);
+                return false;
+            }
+            // calls still running may use the handle, it is only closed with the database
+            droppedHandles.add(handle);
+            for (SecondaryIndexes.Index index : indexes.of(namespace)) {
+                final byte[][] range = SecondaryIndexes.range(index.name);
+                try {
+                    db.deleteRange(indexColumnFamily(), range[0], range[1]);
+                } catch (RocksDBException e) {
+                    log.error("Error clearing index {}, cause: '{}', message: '{}'", index.name, e.getCause(), e.getMessage());
+                }
+            }
+        }
+        log.info("Dropped namespace {}", namespace);
+        return true;
+    }
+
+    private static void checkNamespace(String namespace) {
+        if (namespace == null || !NAMESPACE_NAME.matcher(namespace).matches())
+            throw new IllegalArgumentException("Invalid namespace '" + namespace + "', expected 1 to 64 of [A-Za-z0-9_-]");
+    }
+
+    /**
+     * @return the column family of a namespace, null if the namespace does not exist
+     */
+    private ColumnFamilyHandle columnFamily(String namespace) {
+        return namespaces.get(namespace);
+    }
+
+    /**
+     * @return the column family of a namespace, created if the namespace does not exist yet
+     */
+    private ColumnFamilyHandle createColumnFamily(String namespace) throws RocksDBException {
+        ColumnFamilyHandle handle = namespaces.get(namespace);
+        if (handle != null)
+            return handle;
+
+        synchronized (namespaces) {
+            handle = namespaces.get(namespace);
+            if (handle == null) {
+                final ColumnFamilyDescriptor descriptor = new ColumnFamilyDescriptor(namespace.getBytes(UTF_8),
+                        options.newColumnFamilyOptions(properties.getNamespaces().get(namespace)));
+                handle = db instanceof TtlDB
+                        ? ((TtlDB) db).createColumnFamilyWithTtl(descriptor, ttlSeconds(namespace))
+                        : db.createColumnFamily(descriptor);
+                columnFamilyOptions.put(namespace, descriptor.getOptions());
+                namespaces.put(namespace, handle);
+                log.info("Created namespace {}", namespace);
+            }
+            return handle;
+        }
+    }
+
+    /**
+     * The repository operations applied to the column family of one namespace, which is
+     * looked up on every call so that the view follows drops and re-creations.
+     */
+    private class NamespaceRepository implements KVRepository<String, Object> {
+        private final String namespace;
+
+        NamespaceRepository(String namespace) {
+            this.namespace = namespace;
+        }
+
+        @Override
+        public boolean save(String key, Object value) {
+            return RocksDBRepository.this.save(namespace, key, value, null);
+        }
+
+        @Override
+        public boolean save(String key, Object value, Duration ttl) {
+            return RocksDBRepository.this.save(namespace, key, value, ttl);
+        }
+
+        @Override
+        public Optional<Object> find(String key) {
+            return RocksDBRepository.this.find(namespace, key);
+        }
+
+        @Override
+        public Optional<Versioned<Object>> findVersioned(String key) {
+            return RocksDBRepository.this.findVersioned(namespace, key);
+        }
+
+        @Override
+        public OptionalLong saveIfVersion(String key, long expectedVersion, Object value) {
+            return RocksDBRepository.this.saveIfVersion(namespace, key, expectedVersion, value);
+        }
+
+        @Override
+        public boolean delete(String key) {
+            return RocksDBRepository.this.delete(namespace, key);
+        }
+
+        @Override
+        public Map<String, Object> findAll(Collection<String> keys) {
+            return RocksDBRepository.this.findAll(namespace, keys);
+        }
+
+        @Override
+        public boolean merge(String key, Object operand) {
+            return RocksDBRepository.this.merge(namespace, key, operand);
+        }
+
+        @Override
+        public BatchResult write(Iterator<KVOperation<String, Object>> operations, BatchMode mode) {
+            return RocksDBRepository.this.write(namespace, operations, mode);
+        }
+
+        @Override
+        public BulkLoadResult bulkLoad(Iterator<KVOperation<String, Object>> records) {
+            return RocksDBRepository.this.bulkLoad(namespace, records);
+        }
+
+        @Override
+        public Optional<String> scan(ScanRequest<String> request, BiConsumer<String, Object> visitor) {
+            return RocksDBRepository.this.scan(namespace, request, visitor);
+        }
+
+        @Override
+        public void findByIndex(String index, String value, boolean prefix, int limit, BiConsumer<String, Object> visitor) {
+            RocksDBRepository.this.findByIndex(namespace, index, value, prefix, limit, visitor);
+        }
+
+        @Override
+        public KVRepository<String, Object> namespace(String namespace) {
+            return RocksDBRepository.this.namespace(namespace);
+        }
+
+        @Override
+        public boolean dropNamespace(String namespace) {
+            return RocksDBRepository.this.dropNamespace(namespace);
+        }
+    }
+
+    private static void seek(RocksIterator iterator, ScanRequest<String> request) {
+        if (request.getAfter() == null) {
+            if (request.isReverse())
+                iterator.seekToLast();
+            else
+                iterator.seekToFirst();
+            return;
+        }
+
+        byte[] after = request.getAfter().getBytes(UTF_8);
+        if (request.isReverse()) {
+            iterator.seekForPrev(after);
+            if (iterator.isValid() && Arrays.equals(iterator.key(), after))
+                iterator.prev();
+        } else {
+            iterator.seek(after);
+            if (iterator.isValid() && Arrays.equals(iterator.key(), after))
+                iterator.next();
+        }
+    }
+
+    /**
+     * @return the smallest key greater than every key starting with {@code prefix}, or null
+     * if there is none (the prefix is all 0xFF bytes)
+     */
+    static byte[] prefixEnd(byte[] prefix) {
+        for (int i = prefix.length - 1; i >= 0; i--) {
+            if (prefix[i] != (byte) 0xFF) {
+                byte[] end = Arrays.copyOf(prefix, i + 1);
+                end[i]++;
+                return end;
+            }
+        }
+        return null;
+    }
+
+    // null stands for "unbounded" in both helpers below
+    private static byte[] max(byte[] a, byte[] b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+        return compare(a, b) >= 0 ? a : b;
+    }
+
+    private static byte[] min(byte[] a, byte[] b) {
+        if (a == null || b == null)
+            return a == null ? b : a;
+        return compare(a, b) <= 0 ? a : b;
+    }
+
+    static boolean startsWith(byte[] bytes, byte[] prefix) {
+        if (bytes.length < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    // RocksDB's default bytewise comparator: unsigned bytes, then length
+    static int compare(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0)
+                return diff;
+        }
+        return a.length - b.length;
+    }
+}
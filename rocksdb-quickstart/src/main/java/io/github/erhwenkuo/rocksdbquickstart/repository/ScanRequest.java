@@ -0,0 +1,41 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Key range and paging of a {@link KVRepository#scan scan}. Every field is optional.
+ */
+@Value
+@Builder
+public class ScanRequest<K> {
+    /**
+     * Inclusive lower bound.
+     */
+    K from;
+
+    /**
+     * Exclusive upper bound.
+     */
+    K to;
+
+    /**
+     * Restricts the scan to keys starting with this prefix.
+     */
+    K prefix;
+
+    /**
+     * Resume the scan after this key, as returned by a previous, limited scan.
+     */
+    K after;
+
+    /**
+     * Maximum number of entries to visit, 0 for no limit.
+     */
+    int limit;
+
+    /**
+     * Visit the keys in descending order.
+     */
+    boolean reverse;
+}
@@ -0,0 +1,237 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.JsonBytesCodec;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatchInterface;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Secondary indexes on a field of the JSON values of a namespace, declared with
+ * {@code rocksdb.indexes.<name>.*}.
+ *
+ * <p>All indexes share the {@value #COLUMN_FAMILY} column family, which no namespace name can
+ * clash with. An indexed key has one entry there, with an empty value and the key
+ * {@code <index name> 0x00 <field value> 0x00 <key>}, so the keys of a field value, or of
+ * the values starting with some text, are a prefix iteration away. Field values are indexed
+ * as text (numbers and booleans as their JSON text), values where the field is missing, an
+ * object, an array or null are not indexed.
+ *
+ * <p>The repository writes the entries in the same WriteBatch (or transaction) as the value,
+ * which needs the value it replaces: writes of an indexed namespace read the key first, under
+ * one of {@value #STRIPES} locks picked by the key's hash, so that two writes of a key
+ * cannot both replace the same old value and leave an entry behind.
+ *
+ * <p>Only writes remove entries, so values must not expire: a namespace with a ttl (or under
+ * {@code rocksdb.options.ttl}) cannot be indexed, and keys of an indexed namespace cannot be
+ * saved with a ttl of their own.
+ */
+final class SecondaryIndexes {
+    static final String COLUMN_FAMILY = "$indexes";
+    private static final byte SEPARATOR = 0;
+    private static final int STRIPES = 64;
+    private static final Pattern INDEX_NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, Index> byName = new LinkedHashMap<>();
+    private final Map<String, List<Index>> byNamespace = new LinkedHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    /**
+     * @throws IllegalArgumentException if an index name or field is invalid
+     */
+    SecondaryIndexes(Map<String, RocksDBProperties.Index> settings) {
+        for (Map.Entry<String, RocksDBProperties.Index> entry : settings.entrySet()) {
+            final String name = entry.getKey();
+            if (!INDEX_NAME.matcher(name).matches())
+                throw new IllegalArgumentException("Invalid index name '" + name + "', expected 1 to 64 of [A-Za-z0-9_-]");
+            final RocksDBProperties.Index definition = entry.getValue();
+            if (definition.getField() == null)
+                throw new IllegalArgumentException("Index " + name + " has no field");
+            final Index index = new Index(name, definition.getNamespace(), JsonPointer.compile(definition.getField()));
+            byName.put(name, index);
+            byNamespace.computeIfAbsent(index.namespace, namespace -> new ArrayList<>()).add(index);
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    boolean isEmpty() {
+        return byName.isEmpty();
+    }
+
+    /**
+     * @return the namespaces that have indexes
+     */
+    Iterable<String> namespaces() {
+        return byNamespace.keySet();
+    }
+
+    /**
+     * @return the indexes of a namespace, empty if it has none
+     */
+    List<Index> of(String namespace) {
+        return byNamespace.getOrDefault(namespace, Collections.emptyList());
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no index of that name on the namespace
+     */
+    Index get(String name, String namespace) {
+        final Index index = byName.get(name);
+        if (index == null || !index.namespace.equals(namespace))
+            throw new IllegalArgumentException("No index " + name + " on namespace " + namespace);
+        return index;
+    }
+
+    /**
+     * @return the lock guarding the writes of a key, for the read of the value it replaces
+     */
+    ReentrantLock lock(String key) {
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+    }
+
+    /**
+     * Locks the writes of all keys, for a chunk of a batch that may write any of them; taken
+     * in the same order by every batch. The chunk is read before, so no lock waits for a client.
+     */
+    void lockAll() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    /**
+     * Adds to {@code batch} the index updates of replacing a stored value.
+     *
+     * @param previous the value stored before, as stored, null for none
+     * @param stored   the value stored now, as stored, null for a delete
+     */
+    void update(WriteBatchInterface batch, ColumnFamilyHandle indexes, String namespace, byte[] key,
+                byte[] previous, byte[] stored) throws RocksDBException {
+        for (Index index : of(namespace)) {
+            final byte[] before = previous != null ? index.term(previous) : null;
+            final byte[] after = stored != null ? index.term(stored) : null;
+            if (Arrays.equals(before, after))
+                continue;
+            if (before != null)
+                batch.delete(indexes, entry(index.name, before, key));
+            if (after != null)
+                batch.put(indexes, entry(index.name, after, key), new byte[0]);
+        }
+    }
+
+    /**
+     * @return the first key of the entries of a field value, or of the values starting with
+     * {@code value} when {@code prefix}
+     */
+    static byte[] prefix(String index, String value, boolean prefix) {
+        final byte[] name = index.getBytes(UTF_8);
+        final byte[] term = value.getBytes(UTF_8);
+        final byte[] start = new byte[name.length + 1 + term.length + (prefix ? 0 : 1)];
+        System.arraycopy(name, 0, start, 0, name.length);
+        start[name.length] = SEPARATOR;
+        System.arraycopy(term, 0, start, name.length + 1, term.length);
+        if (!prefix)
+            start[start.length - 1] = SEPARATOR;
+        return start;
+    }
+
+    /**
+     * @return the first key of all entries of an index, and the key after its last entry
+     */
+    static byte[][] range(String index) {
+        final byte[] name = index.getBytes(UTF_8);
+        final byte[] start = Arrays.copyOf(name, name.length + 1);
+        final byte[] end = Arrays.copyOf(name, name.length + 1);
+        start[name.length] = SEPARATOR;
+        end[name.length] = SEPARATOR + 1;
+        return new byte[][]{start, end};
+    }
+
+    /**
+     * @param from where the field value starts, after the index name and its separator
+     * @return the key an index entry points to
+     */
+    static byte[] key(byte[] entry, int from) {
+        int separator = from;
+        while (entry[separator] != SEPARATOR) {
+            separator++;
+        }
+        return Arrays.copyOfRange(entry, separator + 1, entry.length);
+    }
+
+    private static byte[] entry(String index, byte[] term, byte[] key) {
+        final byte[] name = index.getBytes(UTF_8);
+        final byte[] entry = new byte[name.length + 1 + term.length + 1 + key.length];
+        System.arraycopy(name, 0, entry, 0, name.length);
+        entry[name.length] = SEPARATOR;
+        System.arraycopy(term, 0, entry, name.length + 1, term.length);
+        entry[name.length + 1 + term.length] = SEPARATOR;
+        System.arraycopy(key, 0, entry, entry.length - key.length, key.length);
+        return entry;
+    }
+
+    /**
+     * An index on one field of the values of one namespace.
+     */
+    static final class Index {
+        final String name;
+        final String namespace;
+        final JsonPointer field;
+
+        Index(String name, String namespace, JsonPointer field) {
+            this.name = name;
+            this.namespace = namespace;
+            this.field = field;
+        }
+
+        /**
+         * @return the text of the field in a stored value, null if the value is not a JSON
+         * document with a scalar there, or the text holds the separator
+         */
+        byte[] term(byte[] stored) {
+            int offset = stored.length > 0 && stored[0] == CodecRegistry.EXPIRING_ID ? 9 : 0;
+            if (stored.length <= offset || stored[offset] != JsonBytesCodec.ID)
+                return null;
+            offset++;
+            final JsonNode node;
+            try {
+                node = MAPPER.readTree(stored, offset, stored.length - offset).at(field);
+            } catch (IOException e) {
+                return null;
+            }
+            if (!node.isValueNode() || node.isNull())
+                return null;
+            final byte[] term = node.asText().getBytes(UTF_8);
+            for (byte b : term) {
+                if (b == SEPARATOR)
+                    return null;
+            }
+            return term;
+        }
+    }
+}
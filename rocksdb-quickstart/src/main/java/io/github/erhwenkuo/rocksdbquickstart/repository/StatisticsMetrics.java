@@ -0,0 +1,131 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.rocksdb.HistogramData;
+import org.rocksdb.HistogramType;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the tickers and histograms of a RocksDB {@link Statistics} object as Micrometer
+ * meters, under RocksDB's own names (as the lab7 collector does): tickers as counters,
+ * histograms as gauges of their median, 95th and 99th percentile and maximum, tagged
+ * {@code quantile} 0.5, 0.95, 0.99 and 1.0.
+ *
+ * <p>Only the statistics that explain request latencies are published: block cache and bloom
+ * filter effectiveness, where reads are served from, write stalls, flushes and compactions,
+ * and RocksDB's own operation latencies. The meters read the statistics when they are
+ * scraped, and read nothing once {@link #close()} was called, before the statistics are closed:
+ * counters then keep their last value, so that they never go down, and gauges are NaN.
+ *
+ * <p>RocksDB accumulates its histograms from the time the database was opened, and they
+ * cannot be reset without resetting the tickers too. Their percentiles cover the whole
+ * lifetime and move slowly; they show a trend, not the latency of one scrape interval, so they
+ * cannot be lined up with the {@code http.server.requests} percentiles of that interval. The
+ * tickers, taken as rates, can.
+ */
+final class StatisticsMetrics implements AutoCloseable {
+    private static final Map<TickerType, String> TICKERS = new EnumMap<>(TickerType.class);
+    private static final Map<HistogramType, String> HISTOGRAMS = new EnumMap<>(HistogramType.class);
+
+    static {
+        TICKERS.put(TickerType.BLOCK_CACHE_HIT, "rocksdb.block.cache.hit");
+        TICKERS.put(TickerType.BLOCK_CACHE_MISS, "rocksdb.block.cache.miss");
+        TICKERS.put(TickerType.BLOCK_CACHE_DATA_HIT, "rocksdb.block.cache.data.hit");
+        TICKERS.put(TickerType.BLOCK_CACHE_DATA_MISS, "rocksdb.block.cache.data.miss");
+        TICKERS.put(TickerType.BLOCK_CACHE_INDEX_HIT, "rocksdb.block.cache.index.hit");
+        TICKERS.put(TickerType.BLOCK_CACHE_INDEX_MISS, "rocksdb.block.cache.index.miss");
+        TICKERS.put(TickerType.BLOCK_CACHE_FILTER_HIT, "rocksdb.block.cache.filter.hit");
+        TICKERS.put(TickerType.BLOCK_CACHE_FILTER_MISS, "rocksdb.block.cache.filter.miss");
+        TICKERS.put(TickerType.BLOOM_FILTER_USEFUL, "rocksdb.bloom.filter.useful");
+        TICKERS.put(TickerType.BLOOM_FILTER_FULL_POSITIVE, "rocksdb.bloom.filter.full.positive");
+        TICKERS.put(TickerType.MEMTABLE_HIT, "rocksdb.memtable.hit");
+        TICKERS.put(TickerType.MEMTABLE_MISS, "rocksdb.memtable.miss");
+        TICKERS.put(TickerType.GET_HIT_L0, "rocksdb.l0.hit");
+        TICKERS.put(TickerType.GET_HIT_L1, "rocksdb.l1.hit");
+        TICKERS.put(TickerType.GET_HIT_L2_AND_UP, "rocksdb.l2andup.hit");
+        TICKERS.put(TickerType.NUMBER_KEYS_WRITTEN, "rocksdb.number.keys.written");
+        TICKERS.put(TickerType.NUMBER_KEYS_READ, "rocksdb.number.keys.read");
+        TICKERS.put(TickerType.BYTES_WRITTEN, "rocksdb.bytes.written");
+        TICKERS.put(TickerType.BYTES_READ, "rocksdb.bytes.read");
+        TICKERS.put(TickerType.NUMBER_MULTIGET_KEYS_READ, "rocksdb.number.multiget.keys.read");
+        TICKERS.put(TickerType.ITER_BYTES_READ, "rocksdb.db.iter.bytes.read");
+        TICKERS.put(TickerType.STALL_MICROS, "rocksdb.stall.micros");
+        TICKERS.put(TickerType.WAL_FILE_SYNCED, "rocksdb.wal.synced");
+        TICKERS.put(TickerType.WAL_FILE_BYTES, "rocksdb.wal.bytes");
+        TICKERS.put(TickerType.WRITE_DONE_BY_SELF, "rocksdb.write.self");
+        TICKERS.put(TickerType.WRITE_DONE_BY_OTHER, "rocksdb.write.other");
+        TICKERS.put(TickerType.FLUSH_WRITE_BYTES, "rocksdb.flush.write.bytes");
+        TICKERS.put(TickerType.COMPACT_READ_BYTES, "rocksdb.compact.read.bytes");
+        TICKERS.put(TickerType.COMPACT_WRITE_BYTES, "rocksdb.compact.write.bytes");
+
+        HISTOGRAMS.put(HistogramType.DB_GET, "rocksdb.db.get.micros");
+        HISTOGRAMS.put(HistogramType.DB_WRITE, "rocksdb.db.write.micros");
+        HISTOGRAMS.put(HistogramType.DB_MULTIGET, "rocksdb.db.multiget.micros");
+        HISTOGRAMS.put(HistogramType.DB_SEEK, "rocksdb.db.seek.micros");
+        HISTOGRAMS.put(HistogramType.WRITE_STALL, "rocksdb.db.write.stall");
+        HISTOGRAMS.put(HistogramType.WAL_FILE_SYNC_MICROS, "rocksdb.wal.file.sync.micros");
+        HISTOGRAMS.put(HistogramType.SST_READ_MICROS, "rocksdb.sst.read.micros");
+        HISTOGRAMS.put(HistogramType.FLUSH_TIME, "rocksdb.db.flush.micros");
+        HISTOGRAMS.put(HistogramType.COMPACTION_TIME, "rocksdb.compaction.times.micros");
+    }
+
+    private final Statistics statistics;
+    private final Map<TickerType, Long> counts = new EnumMap<>(TickerType.class);
+    private boolean closed;
+
+    StatisticsMetrics(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    void bindTo(MeterRegistry registry) {
+        for (Map.Entry<TickerType, String> ticker : TICKERS.entrySet()) {
+            FunctionCounter.builder(ticker.getValue(), this, metrics -> metrics.count(ticker.getKey()))
+                    .description("RocksDB ticker " + ticker.getKey())
+                    .register(registry);
+        }
+        for (Map.Entry<HistogramType, String> histogram : HISTOGRAMS.entrySet()) {
+            quantile(registry, histogram.getKey(), histogram.getValue(), "0.5", HistogramData::getMedian);
+            quantile(registry, histogram.getKey(), histogram.getValue(), "0.95", HistogramData::getPercentile95);
+            quantile(registry, histogram.getKey(), histogram.getValue(), "0.99", HistogramData::getPercentile99);
+            quantile(registry, histogram.getKey(), histogram.getValue(), "1.0", HistogramData::getMax);
+        }
+    }
+
+    private void quantile(MeterRegistry registry, HistogramType type, String name, String quantile,
+                          ToDoubleFunction<HistogramData> value) {
+        Gauge.builder(name, this, metrics -> metrics.histogram(type, value))
+                .description("RocksDB histogram " + type + " over the whole time since the database was opened")
+                .tag("quantile", quantile)
+                .register(registry);
+    }
+
+    // the last count read once closed: a counter that went back to 0 would read as a reset
+    private synchronized double count(TickerType type) {
+        if (!closed)
+            counts.put(type, statistics.getTickerCount(type));
+        return counts.getOrDefault(type, 0L);
+    }
+
+    private synchronized double histogram(HistogramType type, ToDoubleFunction<HistogramData> value) {
+        return closed ? Double.NaN : value.applyAsDouble(statistics.getHistogramData(type));
+    }
+
+    /**
+     * Reads the tickers one last time and stops reading the statistics, which can be closed
+     * afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        for (TickerType type : TICKERS.keySet()) {
+            count(type);
+        }
+        closed = true;
+    }
+}
@@ -0,0 +1,11 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+/**
+ * Thrown when a conditional write finds the key at another version than expected, either
+ * when reading it or because it was written concurrently before the write committed.
+ */
+public class VersionConflictException extends RuntimeException {
+    public VersionConflictException(String key) {
+        super("Key '" + key + "' is not at the expected version");
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * A value together with the version it was read at, to be passed back to
+ * {@link KVRepository#saveIfVersion} for a write that only applies if the key still holds the
+ * value read, byte for byte. A key written since and back to that value matches too, see the
+ * ABA note on {@link #getVersion()}.
+ */
+@Value
+@AllArgsConstructor
+public class Versioned<V> {
+    /**
+     * Version of a key that does not exist.
+     */
+    public static final long ABSENT = 0;
+
+    /**
+     * Expiry time of a value that does not expire.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    V value;
+
+    /**
+     * Identifies the stored bytes of the value: the first 64 bits of their SHA-256, so it
+     * changes with every write that stores different bytes. It is not a counter: a key written
+     * from A to B and back to A is at the version it had at A again, and a conditional write
+     * expecting that version succeeds (the ABA case). The write only applies to the value read,
+     * not to a key nobody wrote since.
+     */
+    long version;
+
+    /**
+     * When the value expires, in epoch milliseconds, {@link #NEVER} if it was saved without a
+     * time to live.
+     */
+    long expiresAtMillis;
+
+    public Versioned(V value, long version) {
+        this(value, version, NEVER);
+    }
+}
@@ -0,0 +1,176 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit of single key puts, merges and deletes: concurrent callers queue their write and block,
+ * a single writer thread takes whatever is queued (up to {@code maxBatch} writes, waiting at
+ * most {@code maxDelay} after the first one for more to arrive), writes it as one
+ * {@link WriteBatch} and releases all callers at once.
+ *
+ * <p>With {@code sync} write options this turns one WAL fsync per write into one per group.
+ * A caller's write is durable (or has failed) when its call returns, like a plain put, and
+ * the writes of one thread stay in order. Writes of different callers in the same group are
+ * applied atomically together, and fail together.
+ */
+@Slf4j
+class WriteCoalescer implements AutoCloseable {
+    private final RocksDB db;
+    private final WriteOptions writeOptions;
+    private final int maxBatch;
+    private final long maxDelayNanos;
+    private final DistributionSummary groupSizes;
+    private final BlockingQueue<Write> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    WriteCoalescer(RocksDB db, WriteOptions writeOptions, int maxBatch, long maxDelayNanos, DistributionSummary groupSizes) {
+        this.db = db;
+        this.writeOptions = writeOptions;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = maxDelayNanos;
+        this.groupSizes = groupSizes;
+        this.writer = new Thread(this::run, "rocksdb-write-coalescer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    void put(ColumnFamilyHandle columnFamily, byte[] key, byte[] value) throws RocksDBException {
+        submit(new Write(columnFamily, key, value, false));
+    }
+
+    void merge(ColumnFamilyHandle columnFamily, byte[] key, byte[] operand) throws RocksDBException {
+        submit(new Write(columnFamily, key, operand, true));
+    }
+
+    void delete(ColumnFamilyHandle columnFamily, byte[] key) throws RocksDBException {
+        submit(new Write(columnFamily, key, null, false));
+    }
+
+    private void submit(Write write) throws RocksDBException {
+        // closing under the same lock means nothing is queued once the writer saw it closed
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Write coalescer is closed");
+            }
+            queue.add(write);
+        }
+        try {
+            write.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RocksDBException("Interrupted waiting for a coalesced write, it may still be applied");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RocksDBException)
+                throw (RocksDBException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void run() {
+        final List<Write> group = new ArrayList<>(maxBatch);
+        try (final WriteBatch batch = new WriteBatch()) {
+            while (!closed || !queue.isEmpty()) {
+                Write first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+
+                group.add(first);
+                queue.drainTo(group, maxBatch - group.size());
+                final long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Write next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null)
+                        break;
+                    group.add(next);
+                    queue.drainTo(group, maxBatch - group.size());
+                }
+
+                // recorded before the callers are released, who may read the metric right away
+                groupSizes.record(group.size());
+                write(batch, group);
+                group.clear();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            log.warn("Write coalescer interrupted, failing {} queued writes", group.size() + queue.size());
+            fail(group, new IllegalStateException("Write coalescer interrupted"));
+        } catch (RuntimeException e) {
+            log.error("Write coalescer stopped, cause: '{}', message: '{}'", e.getCause(), e.getMessage(), e);
+            fail(group, e);
+        }
+        synchronized (this) {
+            closed = true;
+        }
+        List<Write> left = new ArrayList<>();
+        queue.drainTo(left);
+        fail(left, new IllegalStateException("Write coalescer is closed"));
+    }
+
+    private void write(WriteBatch batch, List<Write> group) {
+        try {
+            for (Write write : group) {
+                if (write.merge)
+                    batch.merge(write.columnFamily, write.key, write.value);
+                else if (write.value != null)
+                    batch.put(write.columnFamily, write.key, write.value);
+                else
+                    batch.delete(write.columnFamily, write.key);
+            }
+            db.write(writeOptions, batch);
+        } catch (RocksDBException e) {
+            fail(group, e);
+            return;
+        }
+        for (Write write : group) {
+            write.done.complete(null);
+        }
+    }
+
+    private static void fail(List<Write> writes, Exception e) {
+        for (Write write : writes) {
+            write.done.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Writes what is already queued and stops the writer thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        synchronized (this) {
+            closed = true;
+        }
+        writer.join();
+    }
+
+    private static final class Write {
+        final ColumnFamilyHandle columnFamily;
+        final byte[] key;
+        final byte[] value;
+        final boolean merge;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Write(ColumnFamilyHandle columnFamily, byte[] key, byte[] value, boolean merge) {
+            this.columnFamily = columnFamily;
+            this.key = key;
+            this.value = value;
+            this.merge = merge;
+        }
+    }
+}
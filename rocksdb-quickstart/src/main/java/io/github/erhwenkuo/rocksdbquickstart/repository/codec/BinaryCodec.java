@@ -0,0 +1,262 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository.codec;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compact tagged binary encoding for JSON-like object graphs: maps with string keys,
+ * lists, strings, booleans, ints, longs, doubles and nulls.
+ *
+ * <p>Every element is a one byte tag followed by its payload. Lengths, counts and
+ * integers are written as (zig-zag) varints, so small values take a single byte.
+ * {@link #supports(Object)} walks the whole graph, so that a map or list holding anything
+ * else (or a map with a non-string key) goes to the next codec instead of failing here.
+ * Lists decode as {@code ArrayList}s, other collections (sets, deques...) go to the next
+ * codec as well, which keeps their type.
+ */
+@Order(2)
+@Component
+public class BinaryCodec implements ValueCodec<Object> {
+    public static final byte ID = 0x02;
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING = 6;
+    private static final byte LIST = 7;
+    private static final byte MAP = 8;
+    private static final byte BYTES = 9;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(Object value) {
+        return value != null && !(value instanceof byte[]) && encodable(value);
+    }
+
+    private static boolean encodable(Object value) {
+        if (value == null
+                || value instanceof Boolean
+                || value instanceof Integer
+                || value instanceof Long
+                || value instanceof Double
+                || value instanceof String
+                || value instanceof byte[]) {
+            return true;
+        }
+        if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                if (!encodable(item))
+                    return false;
+            }
+            return true;
+        }
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!(entry.getKey() instanceof String) || !encodable(entry.getValue()))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        Output out = new Output();
+        out.write(ID);
+        write(out, value);
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        Input in = new Input(bytes, 1);
+        return read(in);
+    }
+
+    private void write(Output out, Object value) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.write(INT);
+            out.writeZigZag((Integer) value);
+        } else if (value instanceof Long) {
+            out.write(LONG);
+            out.writeZigZag((Long) value);
+        } else if (value instanceof Double) {
+            out.write(DOUBLE);
+            out.writeFixed64(Double.doubleToRawLongBits((Double) value));
+        } else if (value instanceof String) {
+            out.write(STRING);
+            out.writeLengthPrefixed(((String) value).getBytes(UTF_8));
+        } else if (value instanceof byte[]) {
+            out.write(BYTES);
+            out.writeLengthPrefixed((byte[]) value);
+        } else if (value instanceof List) {
+            List<?> items = (List<?>) value;
+            out.write(LIST);
+            out.writeVarint(items.size());
+            for (Object item : items) {
+                write(out, item);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.write(MAP);
+            out.writeVarint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!(entry.getKey() instanceof String)) {
+                    throw new IllegalArgumentException("Unsupported map key type: " + typeOf(entry.getKey()));
+                }
+                out.writeLengthPrefixed(((String) entry.getKey()).getBytes(UTF_8));
+                write(out, entry.getValue());
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported value type: " + typeOf(value));
+        }
+    }
+
+    private Object read(Input in) {
+        byte tag = in.read();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INT:
+                return (int) in.readZigZag();
+            case LONG:
+                return in.readZigZag();
+            case DOUBLE:
+                return Double.longBitsToDouble(in.readFixed64());
+            case STRING:
+                return in.readString();
+            case BYTES:
+                return in.readBytes();
+            case LIST: {
+                int size = (int) in.readVarint();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = (int) in.readVarint();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    String key = in.readString();
+                    map.put(key, read(in));
+                }
+                return map;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown tag " + tag + " at offset " + (in.pos - 1));
+        }
+    }
+
+    private static String typeOf(Object value) {
+        return value == null ? "null" : value.getClass().getName();
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        Output() {
+            super(64);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeFixed64(long value) {
+            for (int i = 0; i < 8; i++) {
+                write((int) (value >>> (i * 8)));
+            }
+        }
+
+        void writeLengthPrefixed(byte[] bytes) {
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buf;
+        private int pos;
+
+        Input(byte[] buf, int pos) {
+            this.buf = buf;
+            this.pos = pos;
+        }
+
+        byte read() {
+            return buf[pos++];
+        }
+
+        long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readZigZag() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        long readFixed64() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value |= (long) (buf[pos++] & 0xFF) << (i * 8);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            String value = new String(buf, pos, length, UTF_8);
+            pos += length;
+            return value;
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarint();
+            byte[] value = new byte[length];
+            System.arraycopy(buf, pos, value, 0, length);
+            pos += length;
+            return value;
+        }
+    }
+}
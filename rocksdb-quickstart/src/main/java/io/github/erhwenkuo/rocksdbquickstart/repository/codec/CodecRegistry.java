@@ -0,0 +1,142 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository.codec;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dispatches values to the registered {@link ValueCodec}s.
+ *
+ * <p>Encoding uses the first codec (in {@link org.springframework.core.annotation.Order}
+ * order) that supports the value, decoding looks the codec up by the id byte the
+ * stored value starts with.
+ *
+ * <p>Values saved with an expiry time are wrapped in an envelope of their own: the
+ * {@link #EXPIRING_ID} byte, the expiry time in epoch milliseconds (8 bytes, big endian) and
+ * the value as encoded by its codec. Decoding an expired envelope gives null.
+ */
+@Component
+public class CodecRegistry {
+    public static final byte EXPIRING_ID = 0x7F;
+    private static final int EXPIRING_HEADER = 9;
+
+    private final List<ValueCodec<Object>> codecs = new ArrayList<>();
+    private final ValueCodec<?>[] byId = new ValueCodec<?>[256];
+
+    @SuppressWarnings("unchecked")
+    public CodecRegistry(List<ValueCodec<?>> codecs) {
+        for (ValueCodec<?> codec : codecs) {
+            int id = codec.id() & 0xFF;
+            if (codec.id() == EXPIRING_ID) {
+                throw new IllegalStateException(String.format("Codec %s uses the reserved id 0x%02X",
+                        codec.getClass().getSimpleName(), id));
+            }
+            if (byId[id] != null) {
+                throw new IllegalStateException(String.format("Codecs %s and %s share id 0x%02X",
+                        byId[id].getClass().getSimpleName(), codec.getClass().getSimpleName(), id));
+            }
+            byId[id] = codec;
+            this.codecs.add((ValueCodec<Object>) codec);
+        }
+    }
+
+    /**
+     * @return a registry with the built-in codecs, for use outside of a Spring context
+     */
+    public static CodecRegistry defaults() {
+        return new CodecRegistry(Arrays.asList(new JsonBytesCodec(), new BinaryCodec(), new JdkSerializationCodec()));
+    }
+
+    public byte[] encode(Object value) {
+        for (ValueCodec<Object> codec : codecs) {
+            if (codec.supports(value)) {
+                return codec.encode(value);
+            }
+        }
+        throw new IllegalArgumentException("No codec for value of type " + value.getClass().getName());
+    }
+
+    /**
+     * Encodes a value in an envelope that makes it decode to null after {@code expiresAtMillis}.
+     */
+    public byte[] encode(Object value, long expiresAtMillis) {
+        byte[] bytes = encode(value);
+        return ByteBuffer.allocate(EXPIRING_HEADER + bytes.length)
+                .put(EXPIRING_ID)
+                .putLong(expiresAtMillis)
+                .put(bytes)
+                .array();
+    }
+
+    /**
+     * Encodes a value into a buffer, see {@link ValueCodec#encode(Object, ByteBuffer)}.
+     */
+    public int encode(Object value, ByteBuffer target) {
+        for (ValueCodec<Object> codec : codecs) {
+            if (codec.supports(value)) {
+                return codec.encode(value, target);
+            }
+        }
+        throw new IllegalArgumentException("No codec for value of type " + value.getClass().getName());
+    }
+
+    /**
+     * Decodes the remaining bytes of a buffer, null if expired like {@link #decode(byte[])}.
+     */
+    public Object decode(ByteBuffer bytes) {
+        if (!bytes.hasRemaining()) {
+            throw new IllegalArgumentException("Cannot decode an empty value");
+        }
+        if (bytes.get(bytes.position()) == EXPIRING_ID) {
+            bytes.get();
+            if (bytes.getLong() <= System.currentTimeMillis())
+                return null;
+        }
+        int id = bytes.get(bytes.position()) & 0xFF;
+        ValueCodec<?> codec = byId[id];
+        if (codec == null) {
+            throw new IllegalArgumentException(String.format("No codec registered for id 0x%02X", id));
+        }
+        return codec.decode(bytes);
+    }
+
+    /**
+     * @return the expiry time of a stored value in epoch milliseconds, {@link Long#MAX_VALUE}
+     * if it was saved without one
+     */
+    public static long expiresAtMillis(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == EXPIRING_ID ? ByteBuffer.wrap(bytes, 1, 8).getLong() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Reads the expiry time of the remaining bytes of a buffer without moving its position,
+     * see {@link #expiresAtMillis(byte[])}.
+     */
+    public static long expiresAtMillis(ByteBuffer bytes) {
+        return bytes.hasRemaining() && bytes.get(bytes.position()) == EXPIRING_ID
+                ? bytes.getLong(bytes.position() + 1)
+                : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return the stored value, or null if it was saved with an expiry time that has passed
+     */
+    public Object decode(byte[] bytes) {
+        if (bytes.length == 0) {
+            throw new IllegalArgumentException("Cannot decode an empty value");
+        }
+        if (bytes[0] == EXPIRING_ID) {
+            if (ByteBuffer.wrap(bytes, 1, 8).getLong() <= System.currentTimeMillis())
+                return null;
+            bytes = Arrays.copyOfRange(bytes, EXPIRING_HEADER, bytes.length);
+        }
+        ValueCodec<?> codec = byId[bytes[0] & 0xFF];
+        if (codec == null) {
+            throw new IllegalArgumentException(String.format("No codec registered for id 0x%02X", bytes[0] & 0xFF));
+        }
+        return codec.decode(bytes);
+    }
+}
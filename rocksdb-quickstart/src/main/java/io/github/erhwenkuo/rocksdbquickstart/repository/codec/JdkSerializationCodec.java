@@ -0,0 +1,40 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository.codec;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.util.SerializationUtils;
+
+import java.io.Serializable;
+
+/**
+ * Java serialization, the format every value was stored in before codecs existed.
+ *
+ * <p>A serialization stream always starts with the magic {@code 0xACED}, so its first
+ * byte doubles as the codec id and entries written by older versions of the service
+ * are decoded without any migration.
+ */
+@Order(3)
+@Component
+public class JdkSerializationCodec implements ValueCodec<Object> {
+    public static final byte ID = (byte) 0xAC;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(Object value) {
+        return value instanceof Serializable;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return SerializationUtils.serialize(value);
+    }
+
+    @Override
+    public Object decode(byte[] bytes) {
+        return SerializationUtils.deserialize(bytes);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository.codec;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Stores an already encoded JSON document (the raw HTTP request body) as is.
+ *
+ * <p>Nothing is parsed or re-encoded on the way in or out, the stored value is the
+ * id byte followed by the original JSON bytes.
+ */
+@Order(1)
+@Component
+public class JsonBytesCodec implements ValueCodec<byte[]> {
+    public static final byte ID = 0x01;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(Object value) {
+        return value instanceof byte[];
+    }
+
+    @Override
+    public byte[] encode(byte[] value) {
+        byte[] bytes = new byte[value.length + 1];
+        bytes[0] = ID;
+        System.arraycopy(value, 0, bytes, 1, value.length);
+        return bytes;
+    }
+
+    @Override
+    public byte[] decode(byte[] bytes) {
+        return Arrays.copyOfRange(bytes, 1, bytes.length);
+    }
+
+    @Override
+    public int encode(byte[] value, ByteBuffer target) {
+        int size = value.length + 1;
+        if (size <= target.remaining())
+            target.put(ID).put(value);
+        return size;
+    }
+
+    @Override
+    public byte[] decode(ByteBuffer bytes) {
+        byte[] value = new byte[bytes.remaining() - 1];
+        bytes.get(); // id
+        bytes.get(value);
+        return value;
+    }
+}
@@ -0,0 +1,59 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * SPI for turning repository values into the bytes stored in RocksDB and back.
+ *
+ * <p>The first byte of every encoded value must be the codec {@link #id()}. Values
+ * written by different codecs can therefore live side by side in the same database,
+ * and {@link CodecRegistry} picks the right codec for a stored value by looking at
+ * that byte alone.
+ *
+ * @param <V> the value type handled by the codec
+ */
+public interface ValueCodec<V> {
+
+    /**
+     * @return the id byte this codec writes in front of every encoded value
+     */
+    byte id();
+
+    /**
+     * @param value a value about to be stored
+     * @return true if this codec is able to encode the value
+     */
+    boolean supports(Object value);
+
+    /**
+     * Encodes a value, starting with the {@link #id()} byte.
+     */
+    byte[] encode(V value);
+
+    /**
+     * Decodes a value previously produced by {@link #encode(Object)}, id byte included.
+     */
+    V decode(byte[] bytes);
+
+    /**
+     * Encodes a value into a (reused, possibly direct) buffer, from its position on.
+     *
+     * @return the encoded size; when larger than {@code target.remaining()} nothing was
+     * written and the caller is expected to retry with a buffer of at least that size
+     */
+    default int encode(V value, ByteBuffer target) {
+        byte[] bytes = encode(value);
+        if (bytes.length <= target.remaining())
+            target.put(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Decodes a value from the remaining bytes of a buffer, id byte included.
+     */
+    default V decode(ByteBuffer bytes) {
+        byte[] copy = new byte[bytes.remaining()];
+        bytes.get(copy);
+        return decode(copy);
+    }
+}
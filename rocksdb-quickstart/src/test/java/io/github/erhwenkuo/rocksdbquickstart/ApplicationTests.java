@@ -3,7 +3,9 @@ package io.github.erhwenkuo.rocksdbquickstart;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+		"rocksdb.data-dir=${java.io.tmpdir}/quickstart-tests-${random.uuid}",
+		"rocksdb.backup.dir=${java.io.tmpdir}/quickstart-tests-backups-${random.uuid}"})
 class ApplicationTests {
 
 	@Test
@@ -0,0 +1,82 @@
+package io.github.erhwenkuo.rocksdbquickstart.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RocksDBOptionsTests {
+
+    @ParameterizedTest
+    @EnumSource(OptionsProfile.class)
+    void everyProfileOpensADatabase(OptionsProfile profile, @TempDir Path dir) throws RocksDBException {
+        RocksDBProperties.Tuning settings = new RocksDBProperties.Tuning();
+        settings.setProfile(profile);
+
+        assertThat(putAndGet(settings, dir)).isEqualTo("value");
+    }
+
+    @Test
+    void explicitSettingsOverrideTheProfile() {
+        RocksDBProperties.Tuning settings = new RocksDBProperties.Tuning();
+        settings.setProfile(OptionsProfile.SCAN_HEAVY);
+        settings.setBlockCacheSize(DataSize.ofMegabytes(8));
+
+        RocksDBProperties.Tuning tuning = settings.effective();
+
+        assertThat(tuning.getBlockCacheSize()).isEqualTo(DataSize.ofMegabytes(8));
+        assertThat(tuning.getBlockSize()).isEqualTo(DataSize.ofKilobytes(64));
+    }
+
+    @Test
+    void namespaceSettingsFallBackToTheDatabaseWideOnes() throws RocksDBException {
+        RocksDBProperties.Tuning settings = new RocksDBProperties.Tuning();
+        settings.setProfile(OptionsProfile.WRITE_HEAVY);
+        RocksDBProperties.Tuning namespace = new RocksDBProperties.Tuning();
+        namespace.setWriteBufferSize(DataSize.ofMegabytes(8));
+
+        try (RocksDBOptions options = RocksDBOptions.create(settings)) {
+            ColumnFamilyOptions columnFamily = options.newColumnFamilyOptions(namespace);
+
+            assertThat(columnFamily.writeBufferSize()).isEqualTo(DataSize.ofMegabytes(8).toBytes());
+            assertThat(columnFamily.compressionPerLevel()).hasSize(7);
+        }
+    }
+
+    @Test
+    void optionsCanBeLoadedFromAnOptionsFile(@TempDir Path dir) throws RocksDBException {
+        RocksDBProperties.Tuning settings = new RocksDBProperties.Tuning();
+        settings.setProfile(OptionsProfile.WRITE_HEAVY);
+        putAndGet(settings, dir);
+
+        File[] optionsFiles = dir.toFile().listFiles((d, name) -> name.startsWith("OPTIONS-"));
+        assertThat(optionsFiles).isNotEmpty();
+
+        RocksDBProperties.Tuning fromFile = new RocksDBProperties.Tuning();
+        fromFile.setOptionsFile(optionsFiles[0].getAbsolutePath());
+        assertThat(putAndGet(fromFile, dir)).isEqualTo("value");
+    }
+
+    private static String putAndGet(RocksDBProperties.Tuning settings, Path dir) throws RocksDBException {
+        List<ColumnFamilyHandle> handles = new ArrayList<>();
+        try (RocksDBOptions options = RocksDBOptions.create(settings);
+             RocksDB db = RocksDB.open(options.getDbOptions(), dir.toString(), options.getColumnFamilyDescriptors(), handles)) {
+            db.put("key".getBytes(), "value".getBytes());
+            String value = new String(db.get("key".getBytes()));
+            handles.forEach(ColumnFamilyHandle::close);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Same properties as KVControllerTests, so that the application context is shared.
+@SpringBootTest(properties = {
+        "rocksdb.data-dir=${java.io.tmpdir}/quickstart-tests-${random.uuid}",
+        "rocksdb.backup.dir=${java.io.tmpdir}/quickstart-tests-backups-${random.uuid}"})
+class AccessLogFilterTests {
+
+    @Autowired
+    WebApplicationContext context;
+
+    MockMvc mvc;
+    ListAppender<ILoggingEvent> accessLog;
+
+    @BeforeEach
+    void setup() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).addFilters(new AccessLogFilter(1.0)).build();
+        accessLog = new ListAppender<>();
+        accessLog.start();
+        ((Logger) LoggerFactory.getLogger("access")).addAppender(accessLog);
+    }
+
+    @AfterEach
+    void teardown() {
+        ((Logger) LoggerFactory.getLogger("access")).detachAppender(accessLog);
+    }
+
+    @Test
+    void asyncRequestsAreLoggedWhenTheyComplete() throws Exception {
+        MvcResult started = mvc.perform(get("/async/api/access-log-test-missing"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        started.getAsyncResult();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isNotFound());
+
+        assertThat(accessLog.list).extracting(ILoggingEvent::getFormattedMessage)
+                .singleElement().asString().startsWith("GET /async/api/access-log-test-missing 404 ");
+    }
+
+    @Test
+    void streamedResponsesAreLoggedWhenTheyComplete() throws Exception {
+        MvcResult started = mvc.perform(post("/api/_mget").contentType(MediaType.APPLICATION_JSON).content("[\"access-log-test-missing\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThat(accessLog.list).isEmpty();
+
+        mvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk());
+
+        assertThat(accessLog.list).extracting(ILoggingEvent::getFormattedMessage)
+                .singleElement().asString().startsWith("POST /api/_mget 200 ");
+    }
+}
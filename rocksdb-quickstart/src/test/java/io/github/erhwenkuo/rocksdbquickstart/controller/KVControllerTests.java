@@ -0,0 +1,315 @@
+package io.github.erhwenkuo.rocksdbquickstart.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Runs on a database of its own in a new directory, not the default rocksdb.data-dir a local instance may be using.
+// Shares the cached application context (and so that database) with ApplicationTests, which has the same properties.
+@SpringBootTest(properties = {
+        "rocksdb.data-dir=${java.io.tmpdir}/quickstart-tests-${random.uuid}",
+        "rocksdb.backup.dir=${java.io.tmpdir}/quickstart-tests-backups-${random.uuid}"})
+class KVControllerTests {
+
+    @Autowired
+    WebApplicationContext context;
+
+    @Autowired
+    RocksDBProperties properties;
+
+    MockMvc mvc;
+
+    @BeforeEach
+    void setup() {
+        mvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @Test
+    void savedJsonIsReturnedVerbatim() throws Exception {
+        String json = "{\"bar\": [1, 2.5, \"baz\"]}";
+
+        mvc.perform(post("/api/controller-test").contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isOk())
+                .andExpect(content().string(json));
+
+        mvc.perform(get("/api/controller-test"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(json));
+    }
+
+    @Test
+    void malformedJsonIsNotSaved() throws Exception {
+        for (String body : new String[]{"{\"a\":", "{\"a\":1} {\"b\":2}", "\"\\q\"", ""}) {
+            mvc.perform(post("/api/controller-test-malformed").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+        mvc.perform(post("/async/api/controller-test-malformed").contentType(MediaType.APPLICATION_JSON).content("[1,"))
+                .andExpect(status().isBadRequest());
+
+        mvc.perform(get("/api/controller-test-malformed"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void deletedKeyIsNotFound() throws Exception {
+        mvc.perform(post("/api/controller-test-delete").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isOk());
+
+        mvc.perform(delete("/api/controller-test-delete"))
+                .andExpect(status().isNoContent());
+
+        mvc.perform(get("/api/controller-test-delete"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void batchAppliesPutsAndDeletes() throws Exception {
+        mvc.perform(post("/api/controller-test-batch-2").contentType(MediaType.APPLICATION_JSON).content("{}"))
+                .andExpect(status().isOk());
+
+        String batch = "[{\"op\":\"put\",\"key\":\"controller-test-batch-1\",\"value\":{\"n\":1}},"
+                + "{\"op\":\"delete\",\"key\":\"controller-test-batch-2\"}]";
+        mvc.perform(post("/api/_batch?mode=atomic").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.operations").value(2))
+                .andExpect(jsonPath("$.batches").value(1))
+                .andExpect(jsonPath("$.complete").value(true));
+
+        mvc.perform(get("/api/controller-test-batch-1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"n\":1}"));
+        mvc.perform(get("/api/controller-test-batch-2"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void batchMalformedAfterWrittenChunksReportsThem() throws Exception {
+        String batch = "[{\"op\":\"put\",\"key\":\"controller-test-partial-1\",\"value\":1},"
+                + "{\"op\":\"put\",\"key\":\"controller-test-partial-2\",\"value\":2},"
+                + "{\"op\":\"put\",\"key\":\"controller-test-partial-3\"}]";
+        int maxSize = properties.getBatch().getMaxSize();
+        properties.getBatch().setMaxSize(1);
+        try {
+            mvc.perform(post("/api/_batch?mode=chunked").contentType(MediaType.APPLICATION_JSON).content(batch))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.operations").value(2))
+                    .andExpect(jsonPath("$.batches").value(2))
+                    .andExpect(jsonPath("$.complete").value(false));
+        } finally {
+            properties.getBatch().setMaxSize(maxSize);
+        }
+
+        mvc.perform(get("/api/controller-test-partial-2"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("2"));
+        mvc.perform(get("/api/controller-test-partial-3"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void malformedBatchIsRejected() throws Exception {
+        mvc.perform(post("/api/_batch").contentType(MediaType.APPLICATION_JSON).content("{\"op\":\"put\"}"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/_batch?mode=eventually").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importIngestsPuts() throws Exception {
+        String records = "[{\"op\":\"put\",\"key\":\"controller-test-import-2\",\"value\":[2]},"
+                + "{\"op\":\"put\",\"key\":\"controller-test-import-1\",\"value\":{\"n\":1}}]";
+        mvc.perform(post("/api/ns/controller-test-import/_import").contentType(MediaType.APPLICATION_JSON).content(records))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.records").value(2))
+                .andExpect(jsonPath("$.files").value(1))
+                .andExpect(jsonPath("$.complete").value(true));
+
+        mvc.perform(get("/api/ns/controller-test-import/controller-test-import-1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"n\":1}"));
+        mvc.perform(post("/api/_import").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"op\":\"delete\",\"key\":\"controller-test-import-1\"}]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void indexFindsTheKeysOfAFieldValue() throws Exception {
+        mvc.perform(post("/api/ns/people/controller-test-index-1").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\":{\"city\":\"controller-test-Keelung\"}}"))
+                .andExpect(status().isOk());
+        mvc.perform(post("/api/ns/people/controller-test-index-2").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"address\":{\"city\":\"controller-test-Kaohsiung\"}}"))
+                .andExpect(status().isOk());
+
+        MvcResult result = mvc.perform(get("/api/ns/people/_index/city?value=controller-test-K&prefix=true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.entries[*].key").value(contains("controller-test-index-2", "controller-test-index-1")))
+                .andExpect(jsonPath("$.entries[1].value.address.city").value("controller-test-Keelung"));
+
+        mvc.perform(get("/api/_index/city?value=controller-test-Keelung"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void multiGetReturnsExistingKeys() throws Exception {
+        mvc.perform(post("/api/controller-test-mget-1").contentType(MediaType.APPLICATION_JSON).content("[1,2]"))
+                .andExpect(status().isOk());
+        mvc.perform(post("/api/controller-test-mget-2").contentType(MediaType.APPLICATION_JSON).content("\"two\""))
+                .andExpect(status().isOk());
+
+        MvcResult result = mvc.perform(post("/api/_mget").contentType(MediaType.APPLICATION_JSON)
+                .content("[\"controller-test-mget-1\",\"controller-test-mget-missing\",\"controller-test-mget-2\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"controller-test-mget-1\":[1,2],\"controller-test-mget-2\":\"two\"}"));
+    }
+
+    @Test
+    void scanPagesThroughAPrefix() throws Exception {
+        for (String suffix : new String[]{"a", "b", "c"}) {
+            mvc.perform(post("/api/controller-test-scan-" + suffix).contentType(MediaType.APPLICATION_JSON)
+                    .content("\"" + suffix + "\""))
+                    .andExpect(status().isOk());
+        }
+        mvc.perform(post("/api/controller-test-scan").contentType(MediaType.APPLICATION_JSON).content("0"))
+                .andExpect(status().isOk());
+
+        String firstPage = scan("/api/_scan?prefix=controller-test-scan-&limit=2");
+        assertThat(JsonPath.<List<String>>read(firstPage, "$.entries[*].value")).containsExactly("a", "b");
+        String token = JsonPath.read(firstPage, "$.next");
+        assertThat(token).isNotNull();
+
+        String secondPage = scan("/api/_scan?prefix=controller-test-scan-&limit=2&token=" + token);
+        assertThat(JsonPath.<List<String>>read(secondPage, "$.entries[*].key")).containsExactly("controller-test-scan-c");
+        assertThat(JsonPath.<String>read(secondPage, "$.next")).isNull();
+
+        String reversed = scan("/api/_scan?from=controller-test-scan-b&to=controller-test-scan-d&reverse=true");
+        assertThat(JsonPath.<List<String>>read(reversed, "$.entries[*].value")).containsExactly("c", "b");
+    }
+
+    @Test
+    void namespacesKeepTheirKeysApartAndCanBeDropped() throws Exception {
+        mvc.perform(post("/api/ns/controller-test/ns-key").contentType(MediaType.APPLICATION_JSON).content("\"ns\""))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/api/ns/controller-test/ns-key"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("\"ns\""));
+        mvc.perform(get("/api/ns-key"))
+                .andExpect(status().isNotFound());
+        String entries = scan("/api/ns/controller-test/_scan");
+        assertThat(JsonPath.<List<String>>read(entries, "$.entries[*].key")).containsExactly("ns-key");
+
+        mvc.perform(delete("/api/ns/controller-test"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/api/ns/controller-test/ns-key"))
+                .andExpect(status().isNotFound());
+        mvc.perform(delete("/api/ns/controller-test"))
+                .andExpect(status().isNotFound());
+
+        mvc.perform(get("/api/ns/not.valid/ns-key"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void countersAndListsAreUpdatedByMerges() throws Exception {
+        mvc.perform(delete("/api/ns/counters/controller-test-hits"));
+        mvc.perform(post("/api/ns/counters/controller-test-hits/_incr"))
+                .andExpect(status().isNoContent());
+        mvc.perform(post("/api/ns/counters/controller-test-hits/_incr?by=41"))
+                .andExpect(status().isNoContent());
+        mvc.perform(get("/api/ns/counters/controller-test-hits"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("42"));
+
+        mvc.perform(delete("/api/ns/lists/controller-test-events"));
+        mvc.perform(post("/api/ns/lists/controller-test-events/_append").contentType(MediaType.APPLICATION_JSON).content("{\"a\":1}"))
+                .andExpect(status().isNoContent());
+        mvc.perform(post("/api/ns/lists/controller-test-events/_append").contentType(MediaType.APPLICATION_JSON).content("2"))
+                .andExpect(status().isNoContent());
+        mvc.perform(post("/api/ns/lists/controller-test-events/_append").contentType(MediaType.APPLICATION_JSON).content("{\"b\":"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(post("/api/ns/lists/controller-test-events/_append").contentType(MediaType.APPLICATION_JSON).content("3,4"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/api/ns/lists/controller-test-events"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"a\":1},2]"));
+
+        mvc.perform(post("/api/controller-test-hits/_incr"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void conditionalSavesCompareTheETag() throws Exception {
+        mvc.perform(delete("/api/controller-test-cas"));
+        String created = mvc.perform(post("/api/controller-test-cas").header("If-None-Match", "*")
+                .contentType(MediaType.APPLICATION_JSON).content("1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        mvc.perform(get("/api/controller-test-cas"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", created));
+        mvc.perform(post("/api/controller-test-cas").header("If-None-Match", "*")
+                .contentType(MediaType.APPLICATION_JSON).content("2"))
+                .andExpect(status().isPreconditionFailed());
+
+        mvc.perform(post("/api/controller-test-cas").header("If-Match", created)
+                .contentType(MediaType.APPLICATION_JSON).content("2"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"));
+        mvc.perform(post("/api/controller-test-cas").header("If-Match", created)
+                .contentType(MediaType.APPLICATION_JSON).content("3"))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(get("/api/controller-test-cas"))
+                .andExpect(content().string("2"));
+    }
+
+    private String scan(String uri) throws Exception {
+        MvcResult result = mvc.perform(get(uri)).andExpect(request().asyncStarted()).andReturn();
+        return mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    void asyncApiServesTheSameData() throws Exception {
+        MvcResult saved = mvc.perform(post("/async/api/controller-test-async").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"async\":true}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(saved)).andExpect(status().isOk());
+
+        mvc.perform(get("/api/controller-test-async"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"async\":true}"));
+
+        MvcResult found = mvc.perform(get("/async/api/controller-test-async"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(asyncDispatch(found))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"async\":true}"));
+    }
+}
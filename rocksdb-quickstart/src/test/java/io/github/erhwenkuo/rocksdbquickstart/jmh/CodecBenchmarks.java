@@ -0,0 +1,102 @@
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.BinaryCodec;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.JsonBytesCodec;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.SerializationUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link SerializationUtils} path the repository used to take with the
+ * {@link JsonBytesCodec} passthrough and the {@link BinaryCodec}.
+ *
+ * <p>The {@code *Decode} benchmarks are the GET path, the {@code *Encode} ones the POST
+ * path. The encoded size of each format is printed once during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CodecBenchmarks {
+
+    @Param({"4", "64"})
+    int fields;
+
+    Map<String, Object> document;
+    byte[] json;
+
+    final JsonBytesCodec jsonBytesCodec = new JsonBytesCodec();
+    final BinaryCodec binaryCodec = new BinaryCodec();
+
+    byte[] serialized;
+    byte[] jsonEncoded;
+    byte[] binaryEncoded;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        document = new LinkedHashMap<>();
+        for (int i = 0; i < fields; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", i);
+            item.put("name", "item-" + i);
+            item.put("price", i * 1.5d);
+            item.put("active", i % 2 == 0);
+            List<Object> tags = new ArrayList<>();
+            tags.add("tag-a");
+            tags.add("tag-b");
+            item.put("tags", tags);
+            document.put("field" + i, item);
+        }
+        ObjectMapper mapper = new ObjectMapper();
+        json = mapper.writeValueAsBytes(document);
+        // what Jackson hands to the controller for a @RequestBody Object
+        document = mapper.readValue(json, new TypeReference<LinkedHashMap<String, Object>>() {});
+
+        serialized = SerializationUtils.serialize(document);
+        jsonEncoded = jsonBytesCodec.encode(json);
+        binaryEncoded = binaryCodec.encode(document);
+
+        System.out.printf("%nencoded size (%d fields): serialization=%d, json-bytes=%d, binary=%d%n",
+                fields, serialized.length, jsonEncoded.length, binaryEncoded.length);
+    }
+
+    @Benchmark
+    public byte[] serializationUtilsEncode() {
+        return SerializationUtils.serialize(document);
+    }
+
+    @Benchmark
+    public Object serializationUtilsDecode() {
+        return SerializationUtils.deserialize(serialized);
+    }
+
+    @Benchmark
+    public byte[] jsonBytesEncode() {
+        return jsonBytesCodec.encode(json);
+    }
+
+    @Benchmark
+    public byte[] jsonBytesDecode() {
+        return jsonBytesCodec.decode(jsonEncoded);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return binaryCodec.encode(document);
+    }
+
+    @Benchmark
+    public Object binaryDecode() {
+        return binaryCodec.decode(binaryEncoded);
+    }
+}
@@ -0,0 +1,149 @@
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.VersionConflictException;
+import io.github.erhwenkuo.rocksdbquickstart.repository.Versioned;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.Status;
+import org.rocksdb.Transaction;
+import org.rocksdb.TransactionDB;
+import org.rocksdb.TransactionDBOptions;
+import org.rocksdb.WriteOptions;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Read-increment-write of counters by 8 threads: compare-and-set through
+ * {@link RocksDBRepository#saveIfVersion} (an optimistic transaction, retried after a
+ * conflict) versus a pessimistic {@link TransactionDB} transaction, which locks the key with
+ * getForUpdate so that other writers wait instead of failing.
+ *
+ * <p>{@code keyCount} sets the contention, from one counter all threads fight over to keys
+ * that rarely collide. Besides the increments per second, the {@code commits} and
+ * {@code conflicts} secondary results count the attempts of the measurement: with {@code optimistic}
+ * conflicts are failed commits, redone from the read; with {@code pessimistic} they are lock
+ * timeouts, which should stay at 0.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ConditionalWriteBenchmarks {
+
+    @Param({"optimistic", "pessimistic"})
+    String mode;
+
+    @Param({"1", "16", "100000"})
+    int keyCount;
+
+    final CodecRegistry codecs = CodecRegistry.defaults();
+    RocksDBRepository repository;
+    Options options;
+    TransactionDBOptions transactionDBOptions;
+    TransactionDB transactionDB;
+    WriteOptions writeOptions;
+    ReadOptions readOptions;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Attempts {
+        public long commits;
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commits = 0;
+            conflicts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, RocksDBException {
+        String dataDir = Files.createTempDirectory("quickstart-conditional-write-benchmarks").toString();
+        if ("optimistic".equals(mode)) {
+            RocksDBProperties properties = new RocksDBProperties();
+            properties.setDataDir(dataDir);
+            repository = new RocksDBRepository(properties, codecs, new SimpleMeterRegistry());
+            repository.initialize();
+        } else {
+            RocksDB.loadLibrary();
+            options = new Options().setCreateIfMissing(true);
+            transactionDBOptions = new TransactionDBOptions();
+            transactionDB = TransactionDB.open(options, transactionDBOptions, dataDir);
+            writeOptions = new WriteOptions();
+            readOptions = new ReadOptions();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws InterruptedException {
+        if (repository != null) {
+            repository.close();
+        } else {
+            readOptions.close();
+            writeOptions.close();
+            transactionDB.close();
+            transactionDBOptions.close();
+            options.close();
+        }
+    }
+
+    @Benchmark
+    public void increment(Attempts attempts) throws RocksDBException {
+        String key = "counter" + ThreadLocalRandom.current().nextInt(keyCount);
+        if (repository != null)
+            incrementOptimistic(key, attempts);
+        else
+            incrementPessimistic(key, attempts);
+    }
+
+    private void incrementOptimistic(String key, Attempts attempts) {
+        while (true) {
+            Optional<Versioned<Object>> current = repository.findVersioned(key);
+            long count = current.map(versioned -> (Long) versioned.getValue()).orElse(0L);
+            try {
+                repository.saveIfVersion(key, current.map(Versioned::getVersion).orElse(Versioned.ABSENT), count + 1);
+                attempts.commits++;
+                return;
+            } catch (VersionConflictException e) {
+                attempts.conflicts++;
+            }
+        }
+    }
+
+    private void incrementPessimistic(String key, Attempts attempts) throws RocksDBException {
+        byte[] rawKey = key.getBytes(UTF_8);
+        while (true) {
+            try (Transaction transaction = transactionDB.beginTransaction(writeOptions)) {
+                // waits while another transaction holds the lock on the key
+                byte[] current = transaction.getForUpdate(readOptions, rawKey, true);
+                long count = current != null ? (Long) codecs.decode(current) : 0L;
+                transaction.put(rawKey, codecs.encode(count + 1));
+                transaction.commit();
+                attempts.commits++;
+                return;
+            } catch (RocksDBException e) {
+                Status.Code code = e.getStatus() != null ? e.getStatus().getCode() : null;
+                if (code != Status.Code.TimedOut && code != Status.Code.Busy)
+                    throw e;
+                attempts.conflicts++;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.controller.AccessLogFilter;
+import io.github.erhwenkuo.rocksdbquickstart.controller.KVController;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Load test of {@link KVController} GET/POST through MockMvc, with the access log set up in
+ * the different ways the service has logged requests:
+ * <ul>
+ *     <li>{@code sync-all}: every request logged synchronously, which is roughly what the
+ *     repository's per-call INFO logging used to cost (before)</li>
+ *     <li>{@code async-all}: every request logged through the async appender</li>
+ *     <li>{@code async-sampled}: the default 1% sample through the async appender (after)</li>
+ *     <li>{@code off}: no access log, the floor</li>
+ * </ul>
+ * Log lines go to a temporary file, the same pattern as the console appender.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(4)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ControllerBenchmarks {
+
+    @Param({"sync-all", "async-all", "async-sampled", "off"})
+    String accessLog;
+
+    @Param("10000")
+    int keyCount;
+
+    MockMvc mvc;
+    Appender<ILoggingEvent> appender;
+    Path logFile;
+    Path dataDir;
+    RocksDBRepository repository;
+    final byte[] value = "{\"name\":\"benchmark\",\"tags\":[\"a\",\"b\"],\"count\":42}".getBytes(UTF_8);
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        logFile = Files.createTempFile("quickstart-access", ".log");
+        appender = configureAccessLog(logFile, accessLog.startsWith("async"));
+
+        dataDir = Files.createTempDirectory("quickstart-controller-benchmarks");
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.toString());
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        repository.initialize();
+        for (int i = 0; i < keyCount; i++) {
+            repository.save("key" + i, value);
+        }
+
+        double sampleRate = accessLog.equals("off") ? 0 : accessLog.endsWith("sampled") ? 0.01 : 1;
+        mvc = MockMvcBuilders.standaloneSetup(new KVController(repository, properties, new ObjectMapper()))
+                .addFilters(new AccessLogFilter(sampleRate))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException, InterruptedException {
+        appender.stop();
+        repository.close();
+        FileSystemUtils.deleteRecursively(dataDir);
+        Files.deleteIfExists(logFile);
+    }
+
+    private static Appender<ILoggingEvent> configureAccessLog(Path file, boolean async) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(ch.qos.logback.classic.Level.WARN);
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5level --- [%15.15thread] %-40.40logger{39} : %msg%n");
+        encoder.start();
+
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.toString());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (async) {
+            // same settings as logback-spring.xml
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setDiscardingThreshold(0);
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.addAppender(fileAppender);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+
+        ch.qos.logback.classic.Logger logger = context.getLogger("access");
+        logger.detachAndStopAllAppenders();
+        logger.setLevel(ch.qos.logback.classic.Level.INFO);
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+        return appender;
+    }
+
+    @Benchmark
+    public MvcResult find() throws Exception {
+        int key = ThreadLocalRandom.current().nextInt(keyCount);
+        return mvc.perform(get("/api/key" + key)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult save() throws Exception {
+        int key = ThreadLocalRandom.current().nextInt(keyCount);
+        return mvc.perform(post("/api/key" + key).contentType(MediaType.APPLICATION_JSON).content(value)).andReturn();
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RocksDBRepository} find/save through per-thread direct buffers ({@code direct=true})
+ * versus a {@code byte[]} per key and value across JNI. Meant to be run with the GC profiler,
+ * which reports the bytes allocated per operation as {@code gc.alloc.rate.norm}:
+ * <pre>
+ * ... -Dexec.args="-cp %classpath org.openjdk.jmh.Main DirectBufferBenchmarks -prof gc"
+ * </pre>
+ * The values are JSON bytes, so both paths still allocate the {@code byte[]} a find returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DirectBufferBenchmarks {
+
+    @Param({"false", "true"})
+    boolean direct;
+
+    @Param({"100", "4000", "100000"})
+    int valueSize;
+
+    @Param("10000")
+    int keyCount;
+
+    RocksDBRepository repository;
+    String[] keys;
+    byte[] value;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(Files.createTempDirectory("quickstart-direct-buffer-benchmarks").toString());
+        properties.getDirectBuffers().setEnabled(direct);
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        repository.initialize();
+
+        value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'x');
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "key" + i;
+            repository.save(keys[i], value);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws InterruptedException {
+        repository.close();
+    }
+
+    @Benchmark
+    public Optional<Object> find() {
+        return repository.find(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    @Benchmark
+    public boolean save() {
+        return repository.save(keys[ThreadLocalRandom.current().nextInt(keyCount)], value);
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.BatchMode;
+import io.github.erhwenkuo.rocksdbquickstart.repository.KVOperation;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * {@link RocksDBRepository#findAll} (one MultiGet) versus the same keys looked up one
+ * {@link RocksDBRepository#find} at a time, which is what N {@code GET /api/{key}} calls do.
+ *
+ * <p>One operation fetches {@code keysPerRequest} keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MultiGetBenchmarks {
+
+    @Param("100000")
+    int keyCount;
+
+    @Param({"10", "100", "1000"})
+    int keysPerRequest;
+
+    RocksDBRepository repository;
+    List<List<String>> requests;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(Files.createTempDirectory("quickstart-multiget-benchmarks").toString());
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        repository.initialize();
+
+        final byte[] value = "{\"name\":\"benchmark\",\"tags\":[\"a\",\"b\"],\"count\":42}".getBytes(UTF_8);
+        repository.write(new Iterator<KVOperation<String, Object>>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < keyCount;
+            }
+
+            @Override
+            public KVOperation<String, Object> next() {
+                return KVOperation.put("key" + i++, value);
+            }
+        }, BatchMode.CHUNKED);
+
+        // key sets of consecutive requests do not overlap, to keep the block cache honest
+        requests = new ArrayList<>();
+        for (int from = 0; from + keysPerRequest <= keyCount; from += keysPerRequest) {
+            List<String> keys = new ArrayList<>(keysPerRequest);
+            for (int i = from; i < from + keysPerRequest; i++) {
+                keys.add("key" + i);
+            }
+            requests.add(keys);
+        }
+    }
+
+    private List<String> nextRequest() {
+        if (next == requests.size()) {
+            next = 0;
+        }
+        return requests.get(next++);
+    }
+
+    @Benchmark
+    public Map<String, Object> multiGet() {
+        return repository.findAll(nextRequest());
+    }
+
+    @Benchmark
+    public void sequentialGets(Blackhole bh) {
+        for (String key : nextRequest()) {
+            bh.consume(repository.find(key));
+        }
+    }
+}
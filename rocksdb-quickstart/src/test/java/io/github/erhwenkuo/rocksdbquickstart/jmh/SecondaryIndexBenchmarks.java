@@ -0,0 +1,141 @@
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
+
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.BatchMode;
+import io.github.erhwenkuo.rocksdbquickstart.repository.KVOperation;
+import io.github.erhwenkuo.rocksdbquickstart.repository.KVRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.ScanRequest;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * What a secondary index costs and buys, on {@code keyCount} JSON documents spread over
+ * {@code cityCount} cities.
+ *
+ * <p>{@code save} overwrites a random key with another city, without and with an index on
+ * the city: the indexed save also reads the old value, and writes an index entry delete and
+ * put in its WriteBatch. {@code findByIndex} fetches the documents of one city through the
+ * index, {@code fullScan} finds the same ones by scanning and parsing every document, which
+ * is the only way without an index.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SecondaryIndexBenchmarks {
+    private static final String NAMESPACE = "people";
+    private static final JsonPointer CITY = JsonPointer.compile("/address/city");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @State(Scope.Benchmark)
+    public static class People {
+        @Param("100000")
+        int keyCount;
+
+        @Param("1000")
+        int cityCount;
+
+        RocksDBRepository repository;
+        KVRepository<String, Object> people;
+
+        void open(boolean indexed) throws IOException {
+            RocksDBProperties properties = new RocksDBProperties();
+            properties.setDataDir(Files.createTempDirectory("quickstart-index-benchmarks").toString());
+            if (indexed) {
+                RocksDBProperties.Index index = new RocksDBProperties.Index();
+                index.setNamespace(NAMESPACE);
+                index.setField(CITY.toString());
+                properties.getIndexes().put("city", index);
+            }
+            repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+            repository.initialize();
+            people = repository.namespace(NAMESPACE);
+
+            people.write(new Iterator<KVOperation<String, Object>>() {
+                int i = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return i < keyCount;
+                }
+
+                @Override
+                public KVOperation<String, Object> next() {
+                    return KVOperation.put("person" + i, person(i++ % cityCount));
+                }
+            }, BatchMode.CHUNKED);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws InterruptedException {
+            repository.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Writes extends People {
+        @Param({"false", "true"})
+        boolean indexed;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            open(indexed);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Reads extends People {
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            open(true);
+        }
+    }
+
+    static byte[] person(int city) {
+        return ("{\"name\":\"benchmark\",\"address\":{\"street\":\"Main St\",\"city\":\"" + city(city) + "\"}}").getBytes(UTF_8);
+    }
+
+    static String city(int city) {
+        return "city-" + city;
+    }
+
+    @Benchmark
+    public boolean save(Writes state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return state.people.save("person" + random.nextInt(state.keyCount), person(random.nextInt(state.cityCount)));
+    }
+
+    @Benchmark
+    public void findByIndex(Reads state, Blackhole bh) {
+        String city = city(ThreadLocalRandom.current().nextInt(state.cityCount));
+        state.people.findByIndex("city", city, false, 0, (key, value) -> bh.consume(value));
+    }
+
+    @Benchmark
+    public void fullScan(Reads state, Blackhole bh) {
+        String city = city(ThreadLocalRandom.current().nextInt(state.cityCount));
+        state.people.scan(ScanRequest.<String>builder().build(), (key, value) -> {
+            try {
+                if (city.equals(MAPPER.readTree((byte[]) value).at(CITY).asText()))
+                    bh.consume(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Concurrent {@link RocksDBRepository#save} of 16 threads, each put written on its own versus
+ * grouped by the write coalescer, with and without a WAL sync per write.
+ *
+ * <p>With {@code sync=true} the plain path pays one fsync per save, the coalesced one per
+ * group; without sync coalescing mostly adds the hand-off to the writer thread. RocksDB
+ * already groups concurrent writers internally, so the gain is smaller than the thread count.
+ * {@code maxDelayMicros} only applies when coalescing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Threads(16)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class WriteCoalescerBenchmarks {
+
+    @Param({"false", "true"})
+    boolean sync;
+
+    @Param({"false", "true"})
+    boolean coalesce;
+
+    @Param({"0", "200"})
+    long maxDelayMicros;
+
+    @Param("100000")
+    int keyCount;
+
+    RocksDBRepository repository;
+    final byte[] value = "{\"name\":\"benchmark\",\"tags\":[\"a\",\"b\"],\"count\":42}".getBytes(UTF_8);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(Files.createTempDirectory("quickstart-write-benchmarks").toString());
+        properties.getWrite().setSync(sync);
+        properties.getWrite().setCoalesce(coalesce);
+        properties.getWrite().setMaxDelay(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(maxDelayMicros)));
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        repository.initialize();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws InterruptedException {
+        repository.close();
+    }
+
+    @Benchmark
+    public boolean save() {
+        return repository.save("key" + ThreadLocalRandom.current().nextInt(keyCount), value);
+    }
+}
@@ -0,0 +1,12 @@
+/**
+ * JMH micro-benchmarks for the quickstart repository.
+ *
+ * <p>The benchmarks are compiled with the tests but never run by {@code mvn test}.
+ * Run them (all, or a subset selected by regex) with:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main CodecBenchmarks"
+ * </pre>
+ */
+package io.github.erhwenkuo.rocksdbquickstart.jmh;
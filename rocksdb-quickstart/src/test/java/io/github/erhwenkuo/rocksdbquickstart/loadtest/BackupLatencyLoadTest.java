@@ -0,0 +1,172 @@
+package io.github.erhwenkuo.rocksdbquickstart.loadtest;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.BatchMode;
+import io.github.erhwenkuo.rocksdbquickstart.repository.KVOperation;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBBackups;
+import io.github.erhwenkuo.rocksdbquickstart.repository.RocksDBRepository;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Foreground latency while the database is backed up, for several backup rate limits.
+ *
+ * <p>Fills a database to the given size (once, it is reused by later runs), then runs random
+ * reads (90%) and writes (10%) from {@value #THREADS} threads and records their latency in an
+ * HdrHistogram: first for {@value #IDLE_SECONDS} seconds without a backup, then for as long as
+ * a full backup takes. Usage:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath io.github.erhwenkuo.rocksdbquickstart.loadtest.BackupLatencyLoadTest \
+ *     /var/tmp/backup-loadtest 4GB 0,64MB,16MB"
+ * </pre>
+ *
+ * Arguments: directory of the database and its backups, database size, comma separated
+ * backup rate limits per second (0 for none). Run it on the kind of disk the service uses,
+ * with a database well beyond the page cache: served from memory, reads do not contend with
+ * the backup at all.
+ */
+public class BackupLatencyLoadTest {
+    private static final int THREADS = 8;
+    private static final int IDLE_SECONDS = 20;
+    private static final int VALUE_SIZE = 4096;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Paths.get(args.length > 0 ? args[0] : "/var/tmp/backup-loadtest");
+        DataSize size = DataSize.parse(args.length > 1 ? args[1] : "2GB");
+        String[] rateLimits = (args.length > 2 ? args[2] : "0,64MB,16MB").split(",");
+
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dir.resolve("db").toString());
+        RocksDBRepository repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        repository.initialize();
+        long keys = size.toBytes() / VALUE_SIZE;
+        fill(repository, keys);
+
+        System.out.printf("%-12s %-10s %12s %10s %10s %10s %10s %12s%n",
+                "rate-limit", "phase", "ops/s", "p50(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "backup MB/s");
+        for (String rateLimit : rateLimits) {
+            Path backupDir = dir.resolve("backups");
+            FileSystemUtils.deleteRecursively(backupDir);
+            properties.getBackup().setDir(backupDir.toString());
+            properties.getBackup().setRateLimit(DataSize.parse(rateLimit.trim()));
+            RocksDBBackups backups = new RocksDBBackups(repository, properties, new SimpleMeterRegistry());
+
+            Foreground idle = new Foreground(repository, keys);
+            Thread.sleep(TimeUnit.SECONDS.toMillis(IDLE_SECONDS));
+            idle.stop();
+            report(rateLimit, "idle", idle, -1);
+
+            Foreground busy = new Foreground(repository, keys);
+            long start = System.nanoTime();
+            RocksDBBackups.Backup backup = backups.backup();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            busy.stop();
+            report(rateLimit, "backup", busy, backup.getSize() / seconds / (1 << 20));
+
+            backups.close();
+        }
+        repository.close();
+    }
+
+    // random, so neither compression nor block dedup makes the database smaller than asked for
+    private static void fill(RocksDBRepository repository, long keys) {
+        if (repository.find(key(keys - 1)).isPresent())
+            return;
+        System.out.printf("Writing %d values of %d bytes%n", keys, VALUE_SIZE);
+        repository.write(new Iterator<KVOperation<String, Object>>() {
+            long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < keys;
+            }
+
+            @Override
+            public KVOperation<String, Object> next() {
+                return KVOperation.put(key(next++), value());
+            }
+        }, BatchMode.CHUNKED);
+    }
+
+    private static String key(long i) {
+        return String.format("key%012d", i);
+    }
+
+    private static byte[] value() {
+        byte[] value = new byte[VALUE_SIZE];
+        ThreadLocalRandom.current().nextBytes(value);
+        return value;
+    }
+
+    private static void report(String rateLimit, String phase, Foreground foreground, double backupMBs) {
+        Histogram histogram = foreground.histogram;
+        System.out.printf("%-12s %-10s %12.0f %10.2f %10.2f %10.2f %10.2f %12s%n",
+                rateLimit, phase,
+                histogram.getTotalCount() / foreground.seconds,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()),
+                backupMBs >= 0 ? String.format("%.1f", backupMBs) : "-");
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * Closed loop reads and writes of random keys on {@value #THREADS} threads, until stopped.
+     */
+    private static final class Foreground {
+        final Histogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        final List<Future<?>> threads = new ArrayList<>();
+        final long start = System.nanoTime();
+        double seconds;
+
+        Foreground(RocksDBRepository repository, long keys) {
+            for (int t = 0; t < THREADS; t++) {
+                threads.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (running.get()) {
+                        String key = key(random.nextLong(keys));
+                        long operationStart = System.nanoTime();
+                        if (random.nextInt(10) == 0)
+                            repository.save(key, value());
+                        else
+                            repository.find(key);
+                        histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - operationStart));
+                    }
+                }));
+            }
+        }
+
+        void stop() throws Exception {
+            running.set(false);
+            for (Future<?> thread : threads) {
+                thread.get();
+            }
+            seconds = (System.nanoTime() - start) / 1e9;
+            executor.shutdown();
+        }
+    }
+}
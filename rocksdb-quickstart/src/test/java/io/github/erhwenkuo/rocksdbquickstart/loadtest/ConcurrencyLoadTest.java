@@ -0,0 +1,119 @@
+package io.github.erhwenkuo.rocksdbquickstart.loadtest;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.ByteBufFlux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test harness comparing the blocking {@code /api} and the async {@code /async/api}
+ * GET path of a running service under many concurrent connections.
+ *
+ * <p>Every connection keeps one request in flight (closed loop) for {@code requests} requests,
+ * and the latency of each request is recorded in an HdrHistogram. Usage, against a service
+ * started with {@code mvn spring-boot:run}:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath io.github.erhwenkuo.rocksdbquickstart.loadtest.ConcurrencyLoadTest \
+ *     http://localhost:8080 1000,10000 20"
+ * </pre>
+ *
+ * Arguments: base URL, comma separated connection counts, requests per connection. 10k
+ * connections need {@code ulimit -n} above that on both sides and
+ * {@code server.tomcat.max-connections} raised past its default of 8192.
+ */
+public class ConcurrencyLoadTest {
+    private static final int KEYS = 10_000;
+    private static final String VALUE = "{\"name\":\"loadtest\",\"tags\":[\"a\",\"b\"],\"count\":42}";
+
+    public static void main(String[] args) {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        String[] concurrencies = (args.length > 1 ? args[1] : "1000,10000").split(",");
+        int requestsPerConnection = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        preload(baseUrl);
+
+        System.out.printf("%-12s %12s %12s %10s %10s %10s %10s %10s %8s%n",
+                "api", "connections", "req/s", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)", "errors");
+        for (String c : concurrencies) {
+            int concurrency = Integer.parseInt(c.trim());
+            for (String api : new String[]{"/api/", "/async/api/"}) {
+                // first round warms up connections, JIT and block cache
+                run(baseUrl, api, concurrency, Math.max(1, requestsPerConnection / 4), false);
+                run(baseUrl, api, concurrency, requestsPerConnection, true);
+            }
+        }
+    }
+
+    private static void preload(String baseUrl) {
+        ConnectionProvider provider = ConnectionProvider.create("loadtest-preload", 64);
+        HttpClient client = HttpClient.create(provider).baseUrl(baseUrl)
+                .headers(h -> h.set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON));
+        Flux.range(0, KEYS)
+                .flatMap(i -> client.post().uri("/api/key" + i)
+                        .send(ByteBufFlux.fromString(Mono.just(VALUE)))
+                        .responseSingle((response, body) -> body.then()), 64)
+                .blockLast();
+        provider.disposeLater().block();
+    }
+
+    private static void run(String baseUrl, String api, int concurrency, int requestsPerConnection, boolean report) {
+        ConnectionProvider provider = ConnectionProvider.builder("loadtest-" + concurrency)
+                .maxConnections(concurrency)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMinutes(5))
+                .build();
+        HttpClient client = HttpClient.create(provider).baseUrl(baseUrl);
+        Histogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(5), 3);
+        AtomicLong errors = new AtomicLong();
+
+        long start = System.nanoTime();
+        Flux.range(0, concurrency * requestsPerConnection)
+                .flatMap(i -> Mono.defer(() -> {
+                    String uri = api + "key" + ThreadLocalRandom.current().nextInt(KEYS);
+                    long requestStart = System.nanoTime();
+                    return client.get().uri(uri)
+                            .responseSingle((response, body) -> body.asByteArray()
+                                    .defaultIfEmpty(new byte[0])
+                                    .map(bytes -> response.status().code()))
+                            .doOnNext(status -> {
+                                histogram.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - requestStart));
+                                if (status >= 500)
+                                    errors.incrementAndGet();
+                            });
+                }).onErrorResume(e -> {
+                    errors.incrementAndGet();
+                    return Mono.empty();
+                }), concurrency)
+                .blockLast();
+        long elapsed = System.nanoTime() - start;
+        provider.disposeLater().block();
+
+        if (report) {
+            System.out.printf("%-12s %12d %12.0f %10.2f %10.2f %10.2f %10.2f %10.2f %8d%n",
+                    api, concurrency,
+                    histogram.getTotalCount() / (elapsed / 1e9),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()),
+                    errors.get());
+        }
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
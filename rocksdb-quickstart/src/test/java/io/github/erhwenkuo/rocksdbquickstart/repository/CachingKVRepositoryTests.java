@@ -0,0 +1,116 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingKVRepositoryTests {
+    @TempDir
+    Path dataDir;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RocksDBRepository rocksDB;
+    private CachingKVRepository repository;
+
+    @BeforeEach
+    void setup() {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.toString());
+        properties.getCache().setEnabled(true);
+        rocksDB = new RocksDBRepository(properties, CodecRegistry.defaults(), meterRegistry);
+        rocksDB.initialize();
+        repository = new CachingKVRepository(rocksDB, properties, meterRegistry);
+    }
+
+    @Test
+    void repeatedReadsAreServedFromTheCache() {
+        repository.save("hot", Collections.singletonMap("bar", "baz"));
+
+        assertThat(repository.find("hot")).contains(Collections.singletonMap("bar", "baz"));
+        assertThat(repository.find("hot")).contains(Collections.singletonMap("bar", "baz"));
+        assertThat(repository.find("missing")).isEmpty();
+
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("miss")).isEqualTo(2);
+    }
+
+    @Test
+    void writesInvalidateCachedValues() {
+        repository.save("key", "v1");
+        repository.find("key");
+
+        repository.save("key", "v2");
+        assertThat(repository.find("key")).contains("v2");
+
+        repository.write(Arrays.asList(KVOperation.<String, Object>put("key", "v3")).iterator(), BatchMode.ATOMIC);
+        assertThat(repository.find("key")).contains("v3");
+
+        repository.delete("key");
+        assertThat(repository.find("key")).isEmpty();
+    }
+
+    @Test
+    void versionsAreCachedAndConditionalSavesInvalidateThem() {
+        long version = repository.saveIfVersion("key", Versioned.ABSENT, "v1").orElseThrow(AssertionError::new);
+        assertThat(repository.findVersioned("key")).contains(new Versioned<>("v1", version));
+        assertThat(repository.findVersioned("key")).contains(new Versioned<>("v1", version));
+        assertThat(gets("hit")).isEqualTo(1);
+
+        long updated = repository.saveIfVersion("key", version, "v2").orElseThrow(AssertionError::new);
+        assertThat(repository.findVersioned("key")).contains(new Versioned<>("v2", updated));
+    }
+
+    @Test
+    void valuesSavedWithATtlLeaveTheCacheWhenTheyExpire() throws InterruptedException {
+        repository.save("expiring", "soon", Duration.ofMillis(300));
+        repository.save("lasting", "later");
+        assertThat(repository.findVersioned("expiring").map(Versioned::getExpiresAtMillis).orElse(Versioned.NEVER))
+                .isLessThan(Versioned.NEVER);
+        assertThat(repository.find("expiring")).contains("soon");
+        assertThat(repository.find("lasting")).contains("later");
+        assertThat(gets("hit")).isEqualTo(1);
+
+        Thread.sleep(400);
+
+        assertThat(repository.find("expiring")).isEmpty();
+        assertThat(repository.findAll(Arrays.asList("expiring", "lasting"))).containsOnlyKeys("lasting");
+        assertThat(repository.find("lasting")).contains("later");
+        assertThat(gets("hit")).isEqualTo(3);
+    }
+
+    @Test
+    void findAllCombinesCachedAndStoredValues() {
+        repository.save("a", "1");
+        repository.save("b", "2");
+        repository.find("a");
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("b", "2");
+        expected.put("a", "1");
+        assertThat(repository.findAll(Arrays.asList("b", "missing", "a"))).containsExactlyEntriesOf(expected);
+    }
+
+    @Test
+    void weightGrowsWithTheValueSize() {
+        assertThat(CachingKVRepository.weigh("key", new byte[10_000]))
+                .isGreaterThan(10_000)
+                .isGreaterThan(CachingKVRepository.weigh("key", new byte[10]));
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "rocksdb").tag("result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RocksDBBackupsTests {
+    @TempDir
+    Path dir;
+
+    private RocksDBRepository repository;
+    private RocksDBBackups backups;
+
+    @BeforeEach
+    void setup() {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dir.resolve("db").toString());
+        properties.getBackup().setDir(dir.resolve("backups").toString());
+        properties.getBackup().setKeep(2);
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        repository.initialize();
+        backups = new RocksDBBackups(repository, properties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void teardown() {
+        backups.close();
+    }
+
+    @Test
+    void checkpointIsAnOpenableCopy() throws Exception {
+        repository.save("key", "before");
+        repository.namespace("other").save("key", "other");
+
+        Path checkpoint = backups.checkpoint();
+        repository.save("key", "after");
+
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(checkpoint.toString());
+        RocksDBRepository copy = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        copy.initialize();
+        assertThat(copy.find("key")).contains("before");
+        assertThat(copy.namespace("other").find("key")).contains("other");
+    }
+
+    @Test
+    void backupsArePurgedBeyondTheOnesKept() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            repository.save("key" + i, "value" + i);
+            backups.backup();
+        }
+
+        assertThat(backups.backups()).extracting(RocksDBBackups.Backup::getId).containsExactly(2, 3);
+        assertThat(backups.backups().get(1).getFiles()).isGreaterThan(0);
+    }
+}
@@ -0,0 +1,556 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.MergeOperator;
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.StatsLevel;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RocksDBRepositoryTests {
+    @TempDir
+    Path dataDir;
+
+    private RocksDBProperties properties;
+    private RocksDBRepository repository;
+
+    @BeforeEach
+    void setup() {
+        properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.toString());
+        properties.getDirectBuffers().setInitialValueSize(DataSize.ofBytes(16));
+        properties.getDirectBuffers().setMaxPooledSize(DataSize.ofBytes(64));
+        properties.getNamespaces().put("counters", mergeOperator(MergeOperator.UINT64_ADD));
+        properties.getNamespaces().put("lists", mergeOperator(MergeOperator.STRING_APPEND));
+        properties.getIndexes().put("city", index("people", "/address/city"));
+        properties.getBulkLoad().setRunSize(DataSize.ofKilobytes(1));
+        properties.getBulkLoad().setThreads(2);
+        properties.getBulkLoad().setDir(dataDir.resolve("bulk-load").toString());
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        repository.initialize();
+    }
+
+    @AfterEach
+    void teardown() throws InterruptedException {
+        repository.close();
+    }
+
+    @Test
+    void valuesLargerThanTheDirectBufferAreReadInFull() {
+        for (int size : new int[]{10, 40, 1000}) {
+            byte[] value = new byte[size];
+            Arrays.fill(value, (byte) 'x');
+
+            repository.save("key-" + size, value);
+
+            assertThat((byte[]) repository.find("key-" + size).orElse(null)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    void directAndByteArrayPathsAgreeOnKeys() {
+        String key = "ключ-" + String.join("", Collections.nCopies(100, "長"));
+
+        repository.save(key, "value");
+
+        assertThat(repository.findAll(Collections.singletonList(key))).containsEntry(key, "value");
+        assertThat(repository.find(key)).contains("value");
+        repository.delete(key);
+        assertThat(repository.findAll(Collections.singletonList(key))).isEmpty();
+    }
+
+    @Test
+    void keysAreUtf8WhicheverPathWroteThem() {
+        String key = "ключ-長";
+        KVRepository<String, Object> loaded = repository.namespace("utf8");
+        loaded.bulkLoad(Collections.singletonList(KVOperation.<String, Object>put(key, "loaded")).iterator());
+        repository.save(key, "saved");
+
+        assertThat(loaded.find(key)).contains("loaded");
+        List<String> scanned = new ArrayList<>();
+        repository.scan(ScanRequest.<String>builder().prefix("ключ").build(), (k, value) -> scanned.add(k));
+        assertThat(scanned).containsExactly(key);
+        loaded.scan(ScanRequest.<String>builder().build(), (k, value) -> scanned.add(k));
+        assertThat(scanned).containsExactly(key, key);
+    }
+
+    @Test
+    void keysSavedWithATtlReadAsAbsentOnceExpired() throws InterruptedException {
+        repository.save("expiring", "soon", Duration.ofMillis(200));
+        repository.save("lasting", "later", Duration.ofHours(1));
+        assertThat(repository.find("expiring")).contains("soon");
+
+        Thread.sleep(300);
+
+        assertThat(repository.find("expiring")).isEmpty();
+        assertThat(repository.findAll(Arrays.asList("expiring", "lasting"))).containsOnlyKeys("lasting");
+        List<String> scanned = new ArrayList<>();
+        repository.scan(ScanRequest.<String>builder().build(), (key, value) -> scanned.add(key));
+        assertThat(scanned).containsExactly("lasting");
+    }
+
+    @Test
+    void namespaceTtlDropsEntriesInCompaction() throws Exception {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.resolve("ttl").toString());
+        properties.setTtlEnabled(true);
+        RocksDBProperties.Tuning sessions = new RocksDBProperties.Tuning();
+        sessions.setTtl(Duration.ofSeconds(1));
+        properties.getNamespaces().put("sessions", sessions);
+        RocksDBRepository ttlRepository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        ttlRepository.initialize();
+
+        ttlRepository.namespace("sessions").save("session", "data");
+        ttlRepository.save("key", "kept");
+        assertThat(ttlRepository.namespace("sessions").find("session")).contains("data");
+
+        Thread.sleep(2_100);
+        assertThat(ttlRepository.namespace("sessions").find("session")).isEmpty();
+
+        ColumnFamilyHandle handle = ttlRepository.namespaces.get("sessions");
+        ttlRepository.db.compactRange(handle);
+        assertThat(ttlRepository.db.getLongProperty(handle, "rocksdb.estimate-num-keys")).isZero();
+        assertThat(ttlRepository.find("key")).contains("kept");
+    }
+
+    @Test
+    void directBufferSizesAreChecked() {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.resolve("direct-buffers").toString());
+        properties.getDirectBuffers().setInitialValueSize(DataSize.ofBytes(0));
+        RocksDBRepository empty = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+
+        assertThatThrownBy(empty::initialize)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("initial-value-size");
+
+        properties.getDirectBuffers().setInitialValueSize(DataSize.ofKilobytes(8));
+        properties.getDirectBuffers().setMaxPooledSize(DataSize.ofKilobytes(4));
+        RocksDBRepository inverted = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+
+        assertThatThrownBy(inverted::initialize)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("max-pooled-size");
+    }
+
+    @Test
+    void ttlModeCannotChangeForAnExistingDatabase() {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.toString());
+        properties.setTtlEnabled(true);
+        RocksDBRepository ttlRepository = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+
+        assertThatThrownBy(ttlRepository::initialize)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("rocksdb.ttl-enabled");
+    }
+
+    @Test
+    void directPathUsesTheNamespaceColumnFamily() {
+        repository.namespace("other").save("key", "other");
+        repository.save("key", "default");
+
+        assertThat(repository.namespace("other").find("key")).contains("other");
+        assertThat(repository.find("key")).contains("default");
+    }
+
+    @Test
+    void mergesAddToCountersAndAppendToLists() {
+        KVRepository<String, Object> counters = repository.namespace("counters");
+        counters.merge("hits", 5L);
+        counters.merge("hits", -2L);
+        counters.merge("fresh", 1);
+        counters.save("set", "40".getBytes());
+        counters.merge("set", 2L);
+
+        assertThat(counters.find("hits")).contains(3L);
+        assertThat(counters.findAll(Arrays.asList("fresh", "set"))).containsEntry("fresh", 1L).containsEntry("set", 42L);
+
+        KVRepository<String, Object> lists = repository.namespace("lists");
+        lists.merge("events", "{\"a\":1}".getBytes());
+        lists.merge("events", "\"b\"".getBytes());
+
+        assertThat(new String((byte[]) lists.find("events").orElse(null))).isEqualTo("[{\"a\":1},\"b\"]");
+        List<Object> scanned = new ArrayList<>();
+        lists.scan(ScanRequest.<String>builder().build(), (key, value) -> scanned.add(new String((byte[]) value)));
+        assertThat(scanned).containsExactly("[{\"a\":1},\"b\"]");
+    }
+
+    @Test
+    void mergesNeedAMatchingMergeOperator() {
+        assertThatThrownBy(() -> repository.merge("hits", 1L))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("merge-operator");
+        assertThatThrownBy(() -> repository.namespace("lists").merge("events", 1L))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.namespace("counters").merge("hits", "{}".getBytes()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.namespace("counters").save("hits", 1L, Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void saveIfVersionOnlyWritesTheExpectedVersion() {
+        long created = repository.saveIfVersion("cas", Versioned.ABSENT, "v1").orElseThrow(AssertionError::new);
+        assertThat(repository.findVersioned("cas")).contains(new Versioned<>("v1", created));
+        assertThatThrownBy(() -> repository.saveIfVersion("cas", Versioned.ABSENT, "v2"))
+                .isInstanceOf(VersionConflictException.class);
+
+        long updated = repository.saveIfVersion("cas", created, "v2").orElseThrow(AssertionError::new);
+        assertThat(updated).isNotEqualTo(created);
+        assertThatThrownBy(() -> repository.saveIfVersion("cas", created, "v3"))
+                .isInstanceOf(VersionConflictException.class);
+        assertThat(repository.find("cas")).contains("v2");
+    }
+
+    @Test
+    void versionsIdentifyTheStoredValue() {
+        long a = repository.saveIfVersion("aba", Versioned.ABSENT, "A").orElseThrow(AssertionError::new);
+        repository.save("aba", "B");
+        assertThat(repository.findVersioned("aba").map(Versioned::getVersion)).isNotEqualTo(Optional.of(a));
+
+        // back at A the key is at A's version again, so a write expecting it applies
+        repository.save("aba", "A");
+        assertThat(repository.findVersioned("aba")).contains(new Versioned<>("A", a));
+        assertThat(repository.saveIfVersion("aba", a, "C")).isPresent();
+        assertThat(repository.find("aba")).contains("C");
+    }
+
+    @Test
+    void concurrentCompareAndSetLosesNoUpdates() throws Exception {
+        int threads = 8;
+        int increments = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < increments; i++) {
+                    while (true) {
+                        Optional<Versioned<Object>> current = repository.findVersioned("counter");
+                        long count = current.map(versioned -> (Long) versioned.getValue()).orElse(0L);
+                        try {
+                            repository.saveIfVersion("counter", current.map(Versioned::getVersion).orElse(Versioned.ABSENT), count + 1);
+                            break;
+                        } catch (VersionConflictException e) {
+                            // someone else incremented it first, read it again
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(repository.find("counter")).contains((long) threads * increments);
+    }
+
+    @Test
+    void bulkLoadIngestsRunsAndTheLastPutOfAKeyWins() {
+        repository.save("bulk-000", "before");
+        List<KVOperation<String, Object>> sorted = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sorted.add(KVOperation.put(String.format("bulk-%03d", i), "v" + i));
+        }
+
+        BulkLoadResult result = repository.bulkLoad(sorted.iterator());
+
+        assertThat(result.isComplete()).isTrue();
+        assertThat(result.getRecords()).isEqualTo(200);
+        assertThat(result.getFiles()).isGreaterThan(1);
+        assertThat(repository.find("bulk-000")).contains("v0");
+        assertThat(repository.find("bulk-199")).contains("v199");
+
+        // overlapping runs, with puts of the same key in one run and across runs
+        List<KVOperation<String, Object>> unsorted = new ArrayList<>();
+        for (int i = 199; i >= 0; i--) {
+            unsorted.add(KVOperation.put(String.format("bulk-%03d", i), "w" + i));
+            if (i % 50 == 0)
+                unsorted.add(KVOperation.put("bulk-100", "again-" + i));
+        }
+        unsorted.add(KVOperation.put("bulk-007", "first"));
+        unsorted.add(KVOperation.put("bulk-007", "last"));
+        KVRepository<String, Object> imported = repository.namespace("imported");
+
+        assertThat(imported.bulkLoad(unsorted.iterator()).isComplete()).isTrue();
+        assertThat(imported.find("bulk-100")).contains("again-0");
+        assertThat(imported.find("bulk-007")).contains("last");
+        assertThat(imported.find("bulk-199")).contains("w199");
+        int[] count = {0};
+        imported.scan(ScanRequest.<String>builder().build(), (key, value) -> count[0]++);
+        assertThat(count[0]).isEqualTo(200);
+    }
+
+    @Test
+    void bulkLoadEncodesForTheNamespaceAndTakesOnlyPuts() {
+        KVRepository<String, Object> counters = repository.namespace("counters");
+        counters.bulkLoad(Collections.singletonList(KVOperation.<String, Object>put("loaded", 40L)).iterator());
+        counters.merge("loaded", 2L);
+        assertThat(counters.find("loaded")).contains(42L);
+
+        assertThatThrownBy(() -> repository.bulkLoad(Arrays.asList(
+                KVOperation.<String, Object>put("bulk-put", "v"), KVOperation.<String, Object>delete("bulk-put")).iterator()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(repository.find("bulk-put")).isEmpty();
+    }
+
+    @Test
+    void secondaryInstanceFollowsThePrimaryAndRejectsWrites() throws Exception {
+        repository.save("key", "v1");
+
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.toString());
+        properties.getSecondary().setEnabled(true);
+        properties.getSecondary().setCatchUpInterval(Duration.ofMillis(20));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RocksDBRepository secondary = new RocksDBRepository(properties, CodecRegistry.defaults(), meterRegistry);
+        secondary.initialize();
+        try {
+            assertThat(secondary.find("key")).contains("v1");
+
+            repository.save("key", "v2");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!secondary.find("key").equals(Optional.of("v2")) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(secondary.find("key")).contains("v2");
+            assertThat(meterRegistry.get("rocksdb.secondary.staleness").gauge().value()).isLessThan(5);
+
+            assertThatThrownBy(() -> secondary.save("key", "v3"))
+                    .isInstanceOf(UnsupportedOperationException.class);
+        } finally {
+            secondary.close();
+        }
+    }
+
+    @Test
+    void closeFlushesTheMemtablesUnlessAskedToOnlySyncTheWal() throws Exception {
+        repository.save("durable", "flushed");
+        repository.close();
+
+        SimpleMeterRegistry meterRegistry = reopen();
+        assertThat(repository.find("durable")).contains("flushed");
+        assertThat(meterRegistry.get("rocksdb.open.wal.size").gauge().value()).isZero();
+        assertThat(meterRegistry.get("rocksdb.open.duration").timeGauge().value(TimeUnit.NANOSECONDS)).isPositive();
+
+        properties.getShutdown().setFlushMemtables(false);
+        properties.getWrite().setManualWalFlush(true);
+        properties.getWrite().setWalFlushInterval(Duration.ofHours(1));
+        repository.close();
+        reopen();
+        // only in the WAL buffer until close writes it out
+        repository.save("durable", "in the wal");
+        repository.close();
+
+        meterRegistry = reopen();
+        assertThat(repository.find("durable")).contains("in the wal");
+        assertThat(meterRegistry.get("rocksdb.open.wal.size").gauge().value()).isPositive();
+    }
+
+    @Test
+    void openFailsWhenTheDatabaseCannotBeOpened() throws Exception {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(Files.createFile(dataDir.resolve("not-a-directory")).toString());
+        RocksDBRepository unopenable = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+
+        assertThatThrownBy(unopenable::initialize)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Could not open RocksDB");
+        unopenable.close();
+    }
+
+    @Test
+    void statisticsArePublishedAsMetricsUntilTheDatabaseIsClosed() throws Exception {
+        repository.close();
+        properties.getStatistics().setLevel(StatsLevel.ALL);
+        SimpleMeterRegistry meterRegistry = reopen();
+        repository.save("stats", "value");
+        repository.find("stats");
+        repository.find("stats-missing");
+
+        assertThat(meterRegistry.get("rocksdb.number.keys.written").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("rocksdb.number.keys.read").functionCounter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("rocksdb.memtable.hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("rocksdb.db.get.micros").tag("quantile", "1.0").gauge().value()).isPositive();
+
+        repository.close();
+        assertThat(meterRegistry.get("rocksdb.db.get.micros").tag("quantile", "1.0").gauge().value()).isNaN();
+        // counters never go down, a scrape during shutdown must not read as a reset
+        assertThat(meterRegistry.get("rocksdb.number.keys.written").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("rocksdb.number.keys.read").functionCounter().count()).isEqualTo(2);
+        reopen();
+    }
+
+    private SimpleMeterRegistry reopen() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), meterRegistry);
+        repository.initialize();
+        return meterRegistry;
+    }
+
+    @Test
+    void indexesFollowSavesDeletesBatchesAndConditionalWrites() {
+        KVRepository<String, Object> people = repository.namespace("people");
+        people.save("ann", person("Taipei"));
+        people.save("bob", person("Tainan"));
+        people.save("cid", person("Taipei"));
+        people.save("dan", "{\"address\":{}}".getBytes(UTF_8));
+        assertThat(findByIndex(people, "Taipei", false, 0)).containsExactly("ann", "cid");
+        assertThat(findByIndex(people, "Tai", true, 0)).containsExactly("bob", "ann", "cid");
+        assertThat(findByIndex(people, "Tai", true, 2)).containsExactly("bob", "ann");
+        assertThat(findByIndex(people, "Taipe", false, 0)).isEmpty();
+
+        people.save("ann", person("Tainan"));
+        people.delete("cid");
+        people.write(Arrays.asList(
+                KVOperation.<String, Object>put("eve", person("Taichung")),
+                KVOperation.<String, Object>put("eve", person("Taipei")),
+                KVOperation.<String, Object>delete("bob")).iterator(), BatchMode.ATOMIC);
+        long version = people.findVersioned("dan").orElseThrow(AssertionError::new).getVersion();
+        people.saveIfVersion("dan", version, person("Taichung"));
+
+        assertThat(findByIndex(people, "Taipei", false, 0)).containsExactly("eve");
+        assertThat(findByIndex(people, "Tai", true, 0)).containsExactly("dan", "ann", "eve");
+        assertThat(findByIndex(people, "Taichung", false, 0)).containsExactly("dan");
+    }
+
+    @Test
+    void aStalledBatchDoesNotHoldTheIndexLocks() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        // a request body that stops after its first operation, until the test resumes it
+        Iterator<KVOperation<String, Object>> operations = new Iterator<KVOperation<String, Object>>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == 1) {
+                    stalled.countDown();
+                    try {
+                        resume.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return next < 2;
+            }
+
+            @Override
+            public KVOperation<String, Object> next() {
+                return KVOperation.put("batched-" + next++, person("Taipei"));
+            }
+        };
+        properties.getBatch().setMaxSize(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<BatchResult> batch = executor.submit(() -> repository.namespace("people").write(operations, BatchMode.CHUNKED));
+            assertThat(stalled.await(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(executor.submit(() -> repository.namespace("people").save("ann", person("Taipei"))).get(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(findByIndex(repository.namespace("people"), "Taipei", false, 0)).containsExactly("ann", "batched-0");
+
+            resume.countDown();
+            assertThat(batch.get(10, TimeUnit.SECONDS).getOperations()).isEqualTo(2);
+            assertThat(findByIndex(repository.namespace("people"), "Taipei", false, 0)).containsExactly("ann", "batched-0", "batched-1");
+        } finally {
+            resume.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void indexesSurviveAReopenAndAreClearedWithTheirNamespace() throws Exception {
+        repository.namespace("people").save("ann", person("Taipei"));
+        repository.close();
+        reopen();
+        assertThat(findByIndex(repository.namespace("people"), "Taipei", false, 0)).containsExactly("ann");
+
+        repository.dropNamespace("people");
+        repository.namespace("people").save("bob", person("Taipei"));
+        assertThat(findByIndex(repository.namespace("people"), "Taipei", false, 0)).containsExactly("bob");
+    }
+
+    @Test
+    void indexesAreLimitedToTheirNamespaceAndToWritesThatMaintainThem() {
+        assertThatThrownBy(() -> repository.findByIndex("city", "Taipei", false, 0, (key, value) -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> repository.namespace("people").bulkLoad(
+                Collections.singletonList(KVOperation.<String, Object>put("ann", person("Taipei"))).iterator()))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> repository.namespace("people").save("ann", person("Taipei"), Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.resolve("merged").toString());
+        properties.getNamespaces().put("counters", mergeOperator(MergeOperator.UINT64_ADD));
+        properties.getIndexes().put("hits", index("counters", "/hits"));
+        RocksDBRepository merged = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        assertThatThrownBy(merged::initialize).isInstanceOf(IllegalStateException.class);
+
+        properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.resolve("expiring").toString());
+        RocksDBProperties.Tuning sessions = new RocksDBProperties.Tuning();
+        sessions.setTtl(Duration.ofMinutes(30));
+        properties.getNamespaces().put("sessions", sessions);
+        properties.getIndexes().put("user", index("sessions", "/user"));
+        RocksDBRepository expiring = new RocksDBRepository(properties, CodecRegistry.defaults(), new SimpleMeterRegistry());
+        assertThatThrownBy(expiring::initialize).isInstanceOf(IllegalStateException.class).hasMessageContaining("ttl");
+    }
+
+    @Test
+    void prefixesOfOnly0xFFBytesHaveNoEnd() {
+        byte ff = (byte) 0xFF;
+        assertThat(RocksDBRepository.prefixEnd(new byte[]{'a', ff})).containsExactly('b');
+        assertThat(RocksDBRepository.prefixEnd(new byte[]{ff, ff})).isNull();
+        assertThat(RocksDBRepository.startsWith(new byte[]{ff, ff, 0}, new byte[]{ff, ff})).isTrue();
+        assertThat(RocksDBRepository.startsWith(new byte[]{ff}, new byte[]{ff, ff})).isFalse();
+    }
+
+    private static List<String> findByIndex(KVRepository<String, Object> repository, String value, boolean prefix, int limit) {
+        List<String> keys = new ArrayList<>();
+        repository.findByIndex("city", value, prefix, limit, (key, person) -> keys.add(key));
+        return keys;
+    }
+
+    private static byte[] person(String city) {
+        return ("{\"address\":{\"city\":\"" + city + "\"}}").getBytes(UTF_8);
+    }
+
+    private static RocksDBProperties.Index index(String namespace, String field) {
+        RocksDBProperties.Index index = new RocksDBProperties.Index();
+        index.setNamespace(namespace);
+        index.setField(field);
+        return index;
+    }
+
+    private static RocksDBProperties.Tuning mergeOperator(MergeOperator mergeOperator) {
+        RocksDBProperties.Tuning settings = new RocksDBProperties.Tuning();
+        settings.setMergeOperator(mergeOperator);
+        return settings;
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository;
+
+import io.github.erhwenkuo.rocksdbquickstart.config.RocksDBProperties;
+import io.github.erhwenkuo.rocksdbquickstart.repository.codec.CodecRegistry;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteCoalescerTests {
+    private static final int THREADS = 16;
+    private static final int WRITES_PER_THREAD = 200;
+
+    @TempDir
+    Path dataDir;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RocksDBRepository repository;
+
+    @BeforeEach
+    void setup() {
+        RocksDBProperties properties = new RocksDBProperties();
+        properties.setDataDir(dataDir.toString());
+        properties.getWrite().setSync(true);
+        properties.getWrite().setCoalesce(true);
+        // long enough for the writes of all threads to meet in a group
+        properties.getWrite().setMaxDelay(Duration.ofMillis(5));
+        repository = new RocksDBRepository(properties, CodecRegistry.defaults(), meterRegistry);
+        repository.initialize();
+    }
+
+    @AfterEach
+    void teardown() throws InterruptedException {
+        repository.close();
+    }
+
+    @Test
+    void concurrentSavesAreWrittenInGroups() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(pool.submit(() -> {
+                boolean saved = true;
+                for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                    saved &= repository.save("t" + thread + "-" + i, i);
+                }
+                return saved;
+            }));
+        }
+        for (Future<Boolean> result : results) {
+            assertThat(result.get()).isTrue();
+        }
+        pool.shutdown();
+
+        assertThat(repository.find("t0-0")).contains(0);
+        assertThat(repository.find("t" + (THREADS - 1) + "-" + (WRITES_PER_THREAD - 1))).contains(WRITES_PER_THREAD - 1);
+
+        DistributionSummary groups = meterRegistry.get("rocksdb.coalescer.group.size").summary();
+        assertThat(groups.totalAmount()).isEqualTo(THREADS * WRITES_PER_THREAD);
+        assertThat(groups.count()).isLessThan(THREADS * WRITES_PER_THREAD);
+    }
+
+    @Test
+    void writesOfOneCallerStayInOrder() {
+        assertThat(repository.save("key", "v1")).isTrue();
+        assertThat(repository.delete("key")).isTrue();
+        assertThat(repository.find("key")).isEmpty();
+
+        assertThat(repository.save("key", "v2")).isTrue();
+        assertThat(repository.find("key")).contains("v2");
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.erhwenkuo.rocksdbquickstart.repository.codec;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.SerializationUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CodecRegistryTests {
+    private final CodecRegistry registry = CodecRegistry.defaults();
+
+    @Test
+    void jsonBytesArePassedThrough() {
+        byte[] json = "{\"bar\":\"baz\"}".getBytes(UTF_8);
+
+        byte[] stored = registry.encode(json);
+
+        assertThat(stored[0]).isEqualTo(JsonBytesCodec.ID);
+        assertThat((byte[]) registry.decode(stored)).isEqualTo(json);
+    }
+
+    @Test
+    void binaryCodecRoundTripsJsonLikeValues() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("string", "héllo");
+        value.put("int", -42);
+        value.put("long", Long.MAX_VALUE);
+        value.put("double", 3.25d);
+        value.put("bool", true);
+        value.put("null", null);
+        value.put("list", Arrays.asList(1, "two", Arrays.asList(3L)));
+
+        byte[] stored = registry.encode(value);
+
+        assertThat(stored[0]).isEqualTo(BinaryCodec.ID);
+        assertThat(registry.decode(stored)).isEqualTo(value);
+        assertThat(stored.length).isLessThan(SerializationUtils.serialize(value).length);
+    }
+
+    @Test
+    void legacySerializedEntriesStillDecode() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("bar", "baz");
+
+        assertThat(registry.decode(SerializationUtils.serialize(value))).isEqualTo(value);
+    }
+
+    @Test
+    void otherSerializableValuesFallBackToJavaSerialization() {
+        UUID value = UUID.randomUUID();
+
+        byte[] stored = registry.encode(value);
+
+        assertThat(stored[0]).isEqualTo(JdkSerializationCodec.ID);
+        assertThat(registry.decode(stored)).isEqualTo(value);
+    }
+
+    @Test
+    void graphsWithNestedUnsupportedValuesFallBackToJavaSerialization() {
+        Map<String, Object> value = new LinkedHashMap<>();
+        value.put("list", new ArrayList<>(Arrays.asList(1, UUID.randomUUID())));
+        Map<Integer, String> intKeys = new HashMap<>();
+        intKeys.put(1, "one");
+
+        byte[] stored = registry.encode(value);
+
+        assertThat(stored[0]).isEqualTo(JdkSerializationCodec.ID);
+        assertThat(registry.decode(stored)).isEqualTo(value);
+        assertThat(registry.encode(intKeys)[0]).isEqualTo(JdkSerializationCodec.ID);
+    }
+
+    @Test
+    void setsKeepTheirTypeThroughJavaSerialization() {
+        Set<String> value = new HashSet<>(Arrays.asList("a", "b"));
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("tags", value);
+
+        byte[] stored = registry.encode(value);
+
+        assertThat(stored[0]).isEqualTo(JdkSerializationCodec.ID);
+        assertThat(registry.decode(stored)).isInstanceOf(HashSet.class).isEqualTo(value);
+        assertThat(registry.encode(nested)[0]).isEqualTo(JdkSerializationCodec.ID);
+    }
+
+    @Test
+    void unknownCodecIdIsRejected() {
+        assertThatThrownBy(() -> registry.decode(new byte[]{0x7E, 1, 2}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void expiringValuesDecodeToNullOnceExpired() {
+        byte[] live = registry.encode("value", System.currentTimeMillis() + 60_000);
+        byte[] expired = registry.encode("value", System.currentTimeMillis() - 1);
+
+        assertThat(live[0]).isEqualTo(CodecRegistry.EXPIRING_ID);
+        assertThat(registry.decode(live)).isEqualTo("value");
+        assertThat(registry.decode(ByteBuffer.wrap(live))).isEqualTo("value");
+        assertThat(registry.decode(expired)).isNull();
+        assertThat(registry.decode(ByteBuffer.wrap(expired))).isNull();
+    }
+}